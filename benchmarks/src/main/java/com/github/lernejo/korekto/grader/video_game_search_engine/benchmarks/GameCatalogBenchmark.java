@@ -0,0 +1,41 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GameCatalog;
+import com.github.lernejo.korekto.grader.video_game_search_engine.VideoGameSearchEngineGrader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of `games.json`, done once per grader instance.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameCatalogBenchmark {
+
+    private ObjectMapper om;
+
+    @Setup
+    public void setUp() {
+        om = VideoGameSearchEngineGrader.newObjectMapper();
+    }
+
+    @Benchmark
+    public GameCatalog load() {
+        return GameCatalog.load(om);
+    }
+}
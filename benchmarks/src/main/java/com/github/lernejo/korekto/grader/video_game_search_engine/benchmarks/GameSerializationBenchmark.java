@@ -0,0 +1,52 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.lernejo.korekto.grader.video_game_search_engine.Game;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GameCatalog;
+import com.github.lernejo.korekto.grader.video_game_search_engine.VideoGameSearchEngineGrader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a game with the grader's {@link ObjectMapper}, compared to the catalog's cached JSON form.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameSerializationBenchmark {
+
+    private ObjectMapper om;
+    private GameCatalog catalog;
+    private Game game;
+
+    @Setup
+    public void setUp() {
+        om = VideoGameSearchEngineGrader.newObjectMapper();
+        catalog = GameCatalog.load(om);
+        game = catalog.games().get(0);
+    }
+
+    @Benchmark
+    public byte[] jackson() throws JsonProcessingException {
+        return om.writeValueAsBytes(game);
+    }
+
+    @Benchmark
+    public byte[] cachedPayload() {
+        return catalog.payload(game);
+    }
+}
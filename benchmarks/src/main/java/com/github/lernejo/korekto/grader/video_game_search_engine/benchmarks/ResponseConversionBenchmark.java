@@ -0,0 +1,72 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.lernejo.korekto.grader.video_game_search_engine.Game;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GameCatalog;
+import com.github.lernejo.korekto.grader.video_game_search_engine.SilentJacksonConverterFactory;
+import com.github.lernejo.korekto.grader.video_game_search_engine.VideoGameSearchEngineGrader;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Conversion of a search-api response to a list of games, on a small body and on a multi-MB one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseConversionBenchmark {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    /**
+     * 10 games is about 4 KB, 10 000 games about 4 MB.
+     */
+    @Param({"10", "10000"})
+    private int gameCount;
+
+    private Converter<ResponseBody, ?> converter;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper om = VideoGameSearchEngineGrader.newObjectMapper();
+        GameCatalog catalog = GameCatalog.load(om);
+        Type gameListType = om.getTypeFactory().constructCollectionType(List.class, Game.class);
+        converter = SilentJacksonConverterFactory.create(om)
+            .responseBodyConverter(gameListType, new Annotation[0], new Retrofit.Builder().baseUrl("http://localhost/").build());
+
+        List<Game> games = IntStream.range(0, gameCount).mapToObj(i -> catalog.games().get(i % catalog.games().size())).toList();
+        ByteArrayOutputStream bodyStream = new ByteArrayOutputStream();
+        catalog.writeJsonArray(games, bodyStream);
+        body = bodyStream.toByteArray();
+    }
+
+    @Benchmark
+    public Object convert() throws IOException {
+        return converter.convert(ResponseBody.create(JSON, body));
+    }
+}
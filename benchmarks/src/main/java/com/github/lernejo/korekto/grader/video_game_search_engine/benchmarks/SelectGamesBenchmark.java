@@ -0,0 +1,55 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine.benchmarks;
+
+import com.github.lernejo.korekto.grader.video_game_search_engine.Game;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GameCatalog;
+import com.github.lernejo.korekto.grader.video_game_search_engine.IndexSampler;
+import com.github.lernejo.korekto.grader.video_game_search_engine.VideoGameSearchEngineGrader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game sampling as done by {@code LaunchingContext#selectGames}, on the real catalog and on a synthetic population.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelectGamesBenchmark {
+
+    @Param({"4", "20", "70"})
+    private int count;
+
+    private GameCatalog catalog;
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp() {
+        catalog = GameCatalog.load(VideoGameSearchEngineGrader.newObjectMapper());
+        random = new SplittableRandom(42L);
+    }
+
+    @Benchmark
+    public List<Game> selectFromCatalog() {
+        return catalog.select(count, random::nextInt);
+    }
+
+    @Benchmark
+    public int[] sampleAmongMillions() {
+        return IndexSampler.sample(10_000_000, count, random::nextInt);
+    }
+}
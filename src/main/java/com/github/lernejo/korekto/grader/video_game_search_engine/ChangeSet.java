@@ -0,0 +1,47 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Files changed in a repository since the commit of a previous grading.
+ * <p>
+ * Files under a known module directory belong to that module; documentation and CI files belong to none;
+ * any other file, such as the parent POM or the Maven wrapper, is shared by all modules.
+ *
+ * @param newCommits whether the repository is at another commit than the previous grading, even with no file changed
+ * @param paths      relative to the root of the repository
+ */
+public record ChangeSet(boolean newCommits, List<String> paths) {
+
+    public static final ChangeSet NONE = new ChangeSet(false, List.of());
+    private static final Set<String> MODULES = Set.of(LaunchingContext.SEARCH_API_MODULE, LaunchingContext.FILE_INJECTOR_MODULE);
+
+    public boolean touchesModule(String module) {
+        return paths.stream().anyMatch(path -> path.startsWith(module + "/"));
+    }
+
+    /**
+     * @return whether any module may build or behave differently
+     */
+    public boolean touchesBuild() {
+        return touchesSharedFiles() || MODULES.stream().anyMatch(this::touchesModule);
+    }
+
+    public boolean touchesSharedFiles() {
+        return paths.stream().anyMatch(path -> !isDocumentation(path) && MODULES.stream().noneMatch(module -> path.startsWith(module + "/")));
+    }
+
+    public boolean touchesJavaSources() {
+        return paths.stream().anyMatch(path -> path.endsWith(".java"));
+    }
+
+    private static boolean isDocumentation(String path) {
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        return path.startsWith(".github/")
+            || fileName.endsWith(".md")
+            || fileName.startsWith("LICENSE")
+            || fileName.equals(".gitignore")
+            || fileName.equals(".gitattributes");
+    }
+}
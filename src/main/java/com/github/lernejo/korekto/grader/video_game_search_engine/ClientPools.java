@@ -0,0 +1,223 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clients of the shared brokers, created once by the grader and closed with it.
+ * <p>
+ * Elasticsearch is reached through a single client whose HTTP connection pool is bounded.
+ * RabbitMQ is reached through one connection per virtual host, on which a bounded count of channels is leased;
+ * channels given back open are reused by the next lease.
+ */
+public class ClientPools implements AutoCloseable {
+
+    private static final int MAX_ES_CONNECTIONS = Integer.parseInt(System.getProperty("ES_MAX_CONNECTIONS", "32"));
+    private static final int MAX_AMQP_CHANNELS = Integer.parseInt(System.getProperty("AMQP_MAX_CHANNELS", "64"));
+
+    private final Logger logger = LoggerFactory.getLogger(ClientPools.class);
+    private final int rabbitMqPort;
+    private final RestClient restClient;
+    private final ElasticsearchClient elasticsearchClient;
+    private final Map<String, Connection> amqpConnections = new ConcurrentHashMap<>();
+    private final Map<String, Deque<Channel>> idleChannels = new ConcurrentHashMap<>();
+    private final Semaphore channelPermits = new Semaphore(MAX_AMQP_CHANNELS, true);
+
+    private final AtomicLong esRequests = new AtomicLong();
+    private final AtomicLong amqpConnectionsOpened = new AtomicLong();
+    private final AtomicLong amqpChannelsOpened = new AtomicLong();
+    private final AtomicLong amqpChannelLeases = new AtomicLong();
+    private final AtomicLong amqpChannelLeaseWaitNanos = new AtomicLong();
+    private final AtomicInteger amqpChannelsInUse = new AtomicInteger();
+    private final AtomicInteger amqpChannelsInUsePeak = new AtomicInteger();
+
+    public ClientPools(ObjectMapper om, int rabbitMqPort, int elasticSearchPort) {
+        this.rabbitMqPort = rabbitMqPort;
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("elastic", "admin"));
+        this.restClient = RestClient.builder(new HttpHost("localhost", elasticSearchPort))
+            .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
+                .setDefaultCredentialsProvider(credentialsProvider)
+                .setMaxConnTotal(MAX_ES_CONNECTIONS)
+                .setMaxConnPerRoute(MAX_ES_CONNECTIONS)
+                .addInterceptorLast((HttpRequestInterceptor) (request, context) -> esRequests.incrementAndGet()))
+            .build();
+        this.elasticsearchClient = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper(om)));
+    }
+
+    /**
+     * @return a client shared by all gradings, not to be closed by callers
+     */
+    public ElasticsearchClient elasticsearchClient() {
+        return elasticsearchClient;
+    }
+
+    /**
+     * @return the connection shared by all users of the given virtual host, not to be closed by callers
+     */
+    public Connection amqpConnection(String virtualHost) {
+        Connection existing = amqpConnections.get(virtualHost);
+        if (existing != null && existing.isOpen()) {
+            return existing;
+        }
+        // opened outside of the map's lock, which would otherwise block other virtual hosts of the same bin meanwhile
+        Connection opened = openConnection(virtualHost);
+        boolean published = existing == null
+            ? amqpConnections.putIfAbsent(virtualHost, opened) == null
+            : amqpConnections.replace(virtualHost, existing, opened);
+        if (published) {
+            return opened;
+        }
+        // another thread published its connection first
+        closeQuietly(virtualHost, opened);
+        return amqpConnection(virtualHost);
+    }
+
+    private Connection openConnection(String virtualHost) {
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setPort(rabbitMqPort);
+        factory.setVirtualHost(virtualHost);
+        try {
+            Connection connection = factory.newConnection("korekto-" + virtualHost);
+            amqpConnectionsOpened.incrementAndGet();
+            return connection;
+        } catch (IOException | TimeoutException e) {
+            throw new IllegalStateException("Could not connect to the dockerized RabbitMQ", e);
+        }
+    }
+
+    /**
+     * Waits for a channel to be given back if `AMQP_MAX_CHANNELS` channels are already in use.
+     */
+    public ChannelLease leaseChannel(String virtualHost) {
+        long waitStart = System.nanoTime();
+        channelPermits.acquireUninterruptibly();
+        amqpChannelLeaseWaitNanos.addAndGet(System.nanoTime() - waitStart);
+        amqpChannelLeases.incrementAndGet();
+        amqpChannelsInUsePeak.accumulateAndGet(amqpChannelsInUse.incrementAndGet(), Math::max);
+        try {
+            Channel channel = idleChannels.computeIfAbsent(virtualHost, vh -> new ConcurrentLinkedDeque<>()).pollFirst();
+            while (channel != null && !channel.isOpen()) {
+                channel = idleChannels.get(virtualHost).pollFirst();
+            }
+            if (channel == null) {
+                channel = amqpConnection(virtualHost).createChannel();
+                amqpChannelsOpened.incrementAndGet();
+            }
+            return new ChannelLease(virtualHost, channel);
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw new IllegalStateException("Could not open a channel on the dockerized RabbitMQ", e);
+        }
+    }
+
+    private void release() {
+        amqpChannelsInUse.decrementAndGet();
+        channelPermits.release();
+    }
+
+    /**
+     * Closes the connection to a virtual host which is about to be deleted.
+     */
+    public void closeVirtualHost(String virtualHost) {
+        Deque<Channel> channels = idleChannels.remove(virtualHost);
+        if (channels != null) {
+            channels.clear();
+        }
+        Connection connection = amqpConnections.remove(virtualHost);
+        if (connection != null && connection.isOpen()) {
+            closeQuietly(virtualHost, connection);
+        }
+    }
+
+    private void closeQuietly(String virtualHost, Connection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            logger.debug("Unable to close connection to virtual host " + virtualHost + ": " + e.getMessage());
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(
+            esRequests.get(),
+            amqpConnections.size(),
+            amqpConnectionsOpened.get(),
+            amqpChannelsOpened.get(),
+            amqpChannelLeases.get(),
+            amqpChannelsInUse.get(),
+            amqpChannelsInUsePeak.get(),
+            amqpChannelLeaseWaitNanos.get() / 1_000_000L);
+    }
+
+    @Override
+    public void close() {
+        logger.info("Client pools usage: " + stats());
+        amqpConnections.keySet().forEach(this::closeVirtualHost);
+        try {
+            restClient.close();
+        } catch (IOException e) {
+            logger.debug("Unable to close Elasticsearch client: " + e.getMessage());
+        }
+    }
+
+    public record Stats(long esRequests,
+                        int amqpOpenConnections,
+                        long amqpConnectionsOpened,
+                        long amqpChannelsOpened,
+                        long amqpChannelLeases,
+                        int amqpChannelsInUse,
+                        int amqpChannelsInUsePeak,
+                        long amqpChannelLeaseWaitMillis) {
+    }
+
+    /**
+     * A channel borrowed from the pool, given back on close.
+     */
+    public class ChannelLease implements AutoCloseable {
+        private final String virtualHost;
+        private final Channel channel;
+
+        private ChannelLease(String virtualHost, Channel channel) {
+            this.virtualHost = virtualHost;
+            this.channel = channel;
+        }
+
+        public Channel channel() {
+            return channel;
+        }
+
+        @Override
+        public void close() {
+            Deque<Channel> channels = idleChannels.get(virtualHost);
+            if (channel.isOpen() && channels != null) {
+                channels.addFirst(channel);
+            }
+            release();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.thirdparty.docker.MappedPortsContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * RabbitMQ and Elasticsearch containers, started in parallel.
+ */
+public class DockerInfrastructure implements Infrastructure {
+
+    private static final boolean CONTAINER_REUSE = Boolean.parseBoolean(System.getProperty("CONTAINER_REUSE", "false"));
+
+    private final Logger logger = LoggerFactory.getLogger(DockerInfrastructure.class);
+
+    private final MappedPortsContainer rabbitMqContainer;
+    private final MappedPortsContainer elasticSearchContainer;
+    private final RabbitMqManagementClient rabbitMqManagementClient;
+
+    public DockerInfrastructure() {
+        ExecutorService starter = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<MappedPortsContainer> rabbitMq = CompletableFuture.supplyAsync(() -> newRabbitMqContainer().startAndWaitForServiceToBeUp(), starter);
+            CompletableFuture<MappedPortsContainer> elasticSearch = CompletableFuture.supplyAsync(() -> newElasticSearchContainer().startAndWaitForServiceToBeUp(), starter);
+            try {
+                CompletableFuture.allOf(rabbitMq, elasticSearch).join();
+            } catch (CompletionException e) {
+                Stream.of(rabbitMq, elasticSearch)
+                    .filter(container -> !container.isCompletedExceptionally())
+                    .forEach(container -> container.join().stop());
+                throw e;
+            }
+            rabbitMqContainer = rabbitMq.join();
+            elasticSearchContainer = elasticSearch.join();
+        } finally {
+            starter.shutdown();
+        }
+        rabbitMqManagementClient = new RabbitMqManagementClient(rabbitMqContainer.getMappedPort(15672));
+    }
+
+    private static MappedPortsContainer newRabbitMqContainer() {
+        return reusable(new MappedPortsContainer(
+            "rabbitmq:3.9.13-management-alpine",
+            5672,
+            (sp, sps) -> "RabbitMQ up on " + sp + " (management on http://localhost:" + sps.get(0) + " )",
+            15672));
+    }
+
+    private static MappedPortsContainer newElasticSearchContainer() {
+        return reusable(new MappedPortsContainer(
+            "elasticsearch:7.16.3",
+            9200)
+            .withEnv("discovery.type", "single-node")
+            .withEnv("xpack.security.enabled", "true")
+            .withEnv("ELASTIC_PASSWORD", "admin")
+            .withEnv("bootstrap.memory_lock", "true")
+            .withEnv("ES_JAVA_OPTS", "-Xms256m -Xmx512m"));
+    }
+
+    /**
+     * Reuse also needs `testcontainers.reuse.enable=true` in `~/.testcontainers.properties`.
+     */
+    private static MappedPortsContainer reusable(MappedPortsContainer container) {
+        if (!CONTAINER_REUSE) {
+            return container;
+        }
+        return container
+            .withLabel("korekto.grader", "video-game-search-engine")
+            .withReuse(true);
+    }
+
+    @Override
+    public int rabbitMqPort() {
+        return rabbitMqContainer.getServicePort();
+    }
+
+    @Override
+    public int elasticSearchPort() {
+        return elasticSearchContainer.getServicePort();
+    }
+
+    @Override
+    public void createVirtualHost(String virtualHost) {
+        rabbitMqManagementClient.createVirtualHost(virtualHost);
+    }
+
+    @Override
+    public void deleteVirtualHost(String virtualHost) {
+        rabbitMqManagementClient.deleteVirtualHost(virtualHost);
+    }
+
+    @Override
+    public void close() {
+        if (CONTAINER_REUSE) {
+            logger.info("Leaving RabbitMQ and Elasticsearch containers up to be reused by next runs");
+            return;
+        }
+        rabbitMqContainer.stop();
+        elasticSearchContainer.stop();
+    }
+}
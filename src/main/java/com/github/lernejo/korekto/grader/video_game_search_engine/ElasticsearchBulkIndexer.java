@@ -0,0 +1,108 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sends documents to an index through the `_bulk` API, a batch at a time, and makes them searchable once at the end.
+ * <p>
+ * Documents are pulled from an {@link Iterator} so that large corpora never need to be held in memory.
+ */
+@SubjectForToolkitInclusion
+public class ElasticsearchBulkIndexer {
+
+    public static final int DEFAULT_BATCH_SIZE = Integer.parseInt(System.getProperty("ES_BULK_BATCH_SIZE", "1000"));
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(ElasticsearchBulkIndexer.class);
+    private final ElasticsearchClient client;
+    private final int batchSize;
+
+    public ElasticsearchBulkIndexer(ElasticsearchClient client) {
+        this(client, DEFAULT_BATCH_SIZE);
+    }
+
+    public ElasticsearchBulkIndexer(ElasticsearchClient client, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        }
+        this.client = client;
+        this.batchSize = batchSize;
+    }
+
+    public <T extends Identifiable<String>> Result index(String indexName, Collection<T> docs) {
+        return index(indexName, docs.iterator(), Function.identity());
+    }
+
+    /**
+     * Sends games in their cached JSON form rather than serializing them again.
+     */
+    public Result index(String indexName, Collection<Game> games, GameCatalog catalog) {
+        return index(indexName, games.iterator(), g -> BinaryData.of(catalog.payload(g), ContentType.APPLICATION_JSON));
+    }
+
+    /**
+     * @param documentOf what is sent as the document source of an item
+     */
+    public <T extends Identifiable<String>> Result index(String indexName, Iterator<T> docs, Function<T, ?> documentOf) {
+        long indexed = 0;
+        long failed = 0;
+        List<String> errors = new ArrayList<>();
+        try {
+            while (docs.hasNext()) {
+                BulkRequest.Builder request = new BulkRequest.Builder();
+                int batchCount = 0;
+                while (batchCount < batchSize && docs.hasNext()) {
+                    T doc = docs.next();
+                    Object document = documentOf.apply(doc);
+                    request.operations(op -> op.index(i -> i.index(indexName).id(doc.id()).document(document)));
+                    batchCount++;
+                }
+                BulkResponse response = client.bulk(request.build());
+                for (BulkResponseItem item : response.items()) {
+                    if (item.error() == null) {
+                        indexed++;
+                    } else {
+                        failed++;
+                        if (errors.size() < MAX_REPORTED_ERRORS) {
+                            errors.add("Document `" + item.id() + "` rejected: " + item.error().reason());
+                        }
+                    }
+                }
+            }
+            client.indices().refresh(r -> r.index(indexName));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to bulk index into [" + indexName + "]: " + e.getMessage(), e);
+        }
+        logger.debug("Indexed " + indexed + " documents into [" + indexName + "]" + (failed > 0 ? ", " + failed + " rejected" : ""));
+        return new Result(indexed, failed, errors);
+    }
+
+    /**
+     * @param errors reasons of the first rejected documents only
+     */
+    public record Result(long indexed, long failed, List<String> errors) {
+
+        public Result orThrow() {
+            if (failed > 0) {
+                throw new IllegalStateException(failed + " documents were rejected, first ones: " + errors);
+            }
+            return this;
+        }
+    }
+}
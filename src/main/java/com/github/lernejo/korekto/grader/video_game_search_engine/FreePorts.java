@@ -0,0 +1,50 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out ports that are free on the host, none of them twice until it is released.
+ * <p>
+ * The OS may give the same ephemeral port twice in a row once the probing socket is closed,
+ * so ports held by a grading context are skipped to keep concurrent gradings apart.
+ */
+@SubjectForToolkitInclusion
+public class FreePorts {
+
+    private static final int MAX_ATTEMPTS = 50;
+    private static final Set<Integer> reservedPorts = ConcurrentHashMap.newKeySet();
+
+    private FreePorts() {
+    }
+
+    public static int reserve() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int port = probe();
+            if (reservedPorts.add(port)) {
+                return port;
+            }
+        }
+        throw new IllegalStateException("Unable to find a free port after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * To be called once nothing listens on the given port anymore.
+     */
+    public static void release(int port) {
+        reservedPorts.remove(port);
+    }
+
+    private static int probe() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open a probing socket: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The games of `games.json`, along with their JSON form, serialized once on first use and shared by all gradings.
+ */
+public class GameCatalog {
+
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_SEPARATOR = {','};
+    private static final byte[] ARRAY_END = {']'};
+
+    private final List<Game> games;
+    private final Map<Game, Integer> positions;
+    private final AtomicReferenceArray<byte[]> payloads;
+    private final ObjectWriter writer;
+
+    public GameCatalog(ObjectMapper om, List<Game> games) {
+        this.games = List.copyOf(games);
+        this.positions = new IdentityHashMap<>(this.games.size());
+        for (int i = 0; i < this.games.size(); i++) {
+            positions.put(this.games.get(i), i);
+        }
+        this.payloads = new AtomicReferenceArray<>(this.games.size());
+        this.writer = om.writerFor(Game.class);
+    }
+
+    public static GameCatalog load(ObjectMapper om) {
+        try (InputStream catalogStream = GameCatalog.class.getClassLoader().getResourceAsStream("games.json")) {
+            return new GameCatalog(om, om.readValue(catalogStream, new TypeReference<List<Game>>() {
+            }));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load the game catalog: " + e.getMessage(), e);
+        }
+    }
+
+    public List<Game> games() {
+        return games;
+    }
+
+    /**
+     * @param nextInt given a bound, returns a random int in {@code [0, bound)}
+     * @return exactly {@code count} distinct games
+     */
+    public List<Game> select(int count, IntUnaryOperator nextInt) {
+        return Arrays.stream(IndexSampler.sample(games.size(), count, nextInt))
+            .mapToObj(games::get)
+            .toList();
+    }
+
+    /**
+     * @return the JSON form of the given game, cached if it belongs to the catalog; shared, so it must not be modified
+     */
+    public byte[] payload(Game game) {
+        Integer position = positions.get(game);
+        if (position == null) {
+            return serialize(game);
+        }
+        byte[] payload = payloads.get(position);
+        if (payload == null) {
+            payload = serialize(game);
+            payloads.compareAndSet(position, null, payload);
+        }
+        return payload;
+    }
+
+    /**
+     * Writes the given games as a JSON array, identical to what {@link ObjectMapper#writeValue} would write.
+     */
+    public void writeJsonArray(Iterable<Game> games, OutputStream outputStream) throws IOException {
+        outputStream.write(ARRAY_START);
+        boolean first = true;
+        for (Game game : games) {
+            if (!first) {
+                outputStream.write(ARRAY_SEPARATOR);
+            }
+            outputStream.write(payload(game));
+            first = false;
+        }
+        outputStream.write(ARRAY_END);
+    }
+
+    private byte[] serialize(Game game) {
+        try {
+            return writer.writeValueAsBytes(game);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize game " + game.id(), e);
+        }
+    }
+}
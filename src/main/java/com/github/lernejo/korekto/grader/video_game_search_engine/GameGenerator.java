@@ -0,0 +1,288 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.TimeoutException;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Generates any count of realistic games, reproducibly for a given random source, from a model catalog.
+ * <p>
+ * Genres, platforms, publishers, developers and title words are drawn with a Zipf-like distribution over their ranks
+ * in the model, whose exponent is fitted on the model's frequencies, so that a few values are frequent and most are rare.
+ * Descriptions are walks through the word successions of the model's descriptions.
+ * Games are generated one at a time, as they are consumed, so that millions of them can be written, published or indexed
+ * without being held in memory.
+ */
+public class GameGenerator {
+
+    private static final int MAX_DESCRIPTION_WORDS = 40;
+    private static final int RANDOM_PRECISION = 1 << 30;
+
+    private final IntUnaryOperator nextInt;
+    private final ZipfSampler<String> genres;
+    private final ZipfSampler<String> platforms;
+    private final ZipfSampler<String> publishers;
+    private final ZipfSampler<String> developers;
+    private final ZipfSampler<String> titleWords;
+    private final List<String> descriptionStarts = new ArrayList<>();
+    private final Map<String, List<String>> descriptionSuccessors = new HashMap<>();
+    private final long firstReleaseDay;
+    private final int releaseDaysRange;
+
+    /**
+     * @param nextInt given a bound, returns a random int in {@code [0, bound)}
+     */
+    public GameGenerator(List<Game> model, IntUnaryOperator nextInt) {
+        if (model.isEmpty()) {
+            throw new IllegalArgumentException("Model catalog cannot be empty");
+        }
+        this.nextInt = nextInt;
+        this.genres = ZipfSampler.of(model, Game::genre);
+        this.platforms = ZipfSampler.of(model, Game::platform);
+        this.publishers = ZipfSampler.of(model, Game::publisher);
+        this.developers = ZipfSampler.of(model, Game::developer);
+        this.titleWords = ZipfSampler.of(model.stream().flatMap(g -> words(g.title()).stream()).toList(), Function.identity());
+        for (Game game : model) {
+            List<String> words = words(game.short_description());
+            if (!words.isEmpty()) {
+                descriptionStarts.add(words.get(0));
+            }
+            for (int i = 0; i + 1 < words.size(); i++) {
+                descriptionSuccessors.computeIfAbsent(words.get(i), w -> new ArrayList<>()).add(words.get(i + 1));
+            }
+        }
+        long[] releaseDays = model.stream().map(Game::release_date).filter(Objects::nonNull).mapToLong(LocalDate::toEpochDay).sorted().toArray();
+        this.firstReleaseDay = releaseDays.length == 0 ? LocalDate.of(2000, 1, 1).toEpochDay() : releaseDays[0];
+        this.releaseDaysRange = releaseDays.length == 0 ? 1 : (int) (releaseDays[releaseDays.length - 1] - firstReleaseDay + 1);
+    }
+
+    private static List<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.asList(text.trim().split("\\s+"));
+    }
+
+    /**
+     * @param sequence makes the id of the game, so distinct sequences give distinct ids
+     */
+    public Game next(long sequence) {
+        String id = "synthetic-" + sequence;
+        String title = title();
+        return new Game(
+            id,
+            title,
+            "https://www.freetogame.com/g/" + id + "/thumbnail.jpg",
+            description(),
+            "https://www.freetogame.com/open/" + slug(title) + "-" + sequence,
+            genres.sample(this::nextDouble),
+            platforms.sample(this::nextDouble),
+            publishers.sample(this::nextDouble),
+            developers.sample(this::nextDouble),
+            LocalDate.ofEpochDay(firstReleaseDay + nextInt.applyAsInt(releaseDaysRange))
+        );
+    }
+
+    /**
+     * @return {@code count} games, generated as they are iterated over
+     */
+    public Iterable<Game> games(long count) {
+        return () -> new Iterator<>() {
+            private long sequence;
+
+            @Override
+            public boolean hasNext() {
+                return sequence < count;
+            }
+
+            @Override
+            public Game next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return GameGenerator.this.next(sequence++);
+            }
+        };
+    }
+
+    /**
+     * Writes {@code count} games as a JSON array.
+     */
+    public void writeJsonArray(long count, GameCatalog catalog, OutputStream outputStream) throws IOException {
+        catalog.writeJsonArray(games(count), outputStream);
+    }
+
+    /**
+     * Publishes {@code count} games to the given queue, waiting for the broker to confirm them a batch at a time.
+     */
+    public void publish(long count, GameCatalog catalog, Channel channel, String queueName, int confirmBatchSize, long confirmTimeoutMillis) throws IOException, TimeoutException, InterruptedException {
+        AMQP.BasicProperties basicProperties = new AMQP.BasicProperties().builder().contentType("application/json").deliveryMode(2).build();
+        channel.confirmSelect();
+        long published = 0;
+        for (Game game : games(count)) {
+            channel.basicPublish("", queueName, basicProperties.builder().headers(Map.of("game_id", game.id())).build(), catalog.payload(game));
+            if (++published % confirmBatchSize == 0) {
+                channel.waitForConfirmsOrDie(confirmTimeoutMillis);
+            }
+        }
+        channel.waitForConfirmsOrDie(confirmTimeoutMillis);
+    }
+
+    /**
+     * Indexes {@code count} games, a bulk batch at a time.
+     */
+    public ElasticsearchBulkIndexer.Result index(long count, GameCatalog catalog, ElasticsearchBulkIndexer indexer, String indexName) {
+        return indexer.index(indexName, games(count).iterator(), g -> BinaryData.of(catalog.payload(g), ContentType.APPLICATION_JSON));
+    }
+
+    private String title() {
+        int wordCount = 1 + nextInt.applyAsInt(3);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            String word = titleWords.sample(this::nextDouble);
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        if (nextInt.applyAsInt(5) == 0) {
+            title.append(' ').append(2 + nextInt.applyAsInt(3));
+        }
+        return title.toString();
+    }
+
+    private String description() {
+        if (descriptionStarts.isEmpty()) {
+            return "";
+        }
+        StringBuilder description = new StringBuilder();
+        String word = descriptionStarts.get(nextInt.applyAsInt(descriptionStarts.size()));
+        for (int count = 0; count < MAX_DESCRIPTION_WORDS; count++) {
+            if (count > 0) {
+                description.append(' ');
+            }
+            description.append(word);
+            List<String> successors = descriptionSuccessors.get(word);
+            if (endsSentence(word) || successors == null) {
+                break;
+            }
+            word = successors.get(nextInt.applyAsInt(successors.size()));
+        }
+        if (!endsSentence(description)) {
+            description.append('.');
+        }
+        return description.toString();
+    }
+
+    private static boolean endsSentence(CharSequence text) {
+        char last = text.charAt(text.length() - 1);
+        return last == '.' || last == '!' || last == '?';
+    }
+
+    private static String slug(String title) {
+        return title.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("(^-|-$)", "");
+    }
+
+    private double nextDouble() {
+        return nextInt.applyAsInt(RANDOM_PRECISION) / (double) RANDOM_PRECISION;
+    }
+
+    /**
+     * Draws the value of rank {@code r} (starting at 1) with a probability proportional to {@code 1 / r^s}.
+     */
+    static final class ZipfSampler<T> {
+        private final List<T> valuesByRank;
+        private final double[] cumulativeProbabilities;
+        private final double exponent;
+
+        private ZipfSampler(List<T> valuesByRank, double exponent) {
+            this.valuesByRank = valuesByRank;
+            this.exponent = exponent;
+            this.cumulativeProbabilities = new double[valuesByRank.size()];
+            double total = 0;
+            for (int rank = 1; rank <= valuesByRank.size(); rank++) {
+                total += 1 / Math.pow(rank, exponent);
+                cumulativeProbabilities[rank - 1] = total;
+            }
+            for (int i = 0; i < cumulativeProbabilities.length; i++) {
+                cumulativeProbabilities[i] /= total;
+            }
+        }
+
+        /**
+         * Ranks values by their frequency in the model, and fits the exponent on these frequencies.
+         */
+        static <E, T> ZipfSampler<T> of(List<E> model, Function<E, T> valueOf) {
+            Map<T, Long> frequencies = model.stream()
+                .map(valueOf)
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+            if (frequencies.isEmpty()) {
+                throw new IllegalArgumentException("Model has no value to sample from");
+            }
+            List<Map.Entry<T, Long>> ranked = frequencies.entrySet().stream()
+                .sorted(Map.Entry.<T, Long>comparingByValue().reversed().thenComparing(e -> String.valueOf(e.getKey()), Comparator.naturalOrder()))
+                .toList();
+            return new ZipfSampler<>(ranked.stream().map(Map.Entry::getKey).toList(), fitExponent(ranked.stream().mapToLong(Map.Entry::getValue).toArray()));
+        }
+
+        /**
+         * Least squares slope of log(frequency) over log(rank), bounded to keep degenerate models usable.
+         */
+        static double fitExponent(long[] frequenciesByRank) {
+            int n = frequenciesByRank.length;
+            if (n < 2) {
+                return 1.0;
+            }
+            double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+            for (int i = 0; i < n; i++) {
+                double x = Math.log(i + 1);
+                double y = Math.log(frequenciesByRank[i]);
+                sumX += x;
+                sumY += y;
+                sumXY += x * y;
+                sumXX += x * x;
+            }
+            double slope = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+            return Math.min(3.0, Math.max(0.5, -slope));
+        }
+
+        /**
+         * @param nextDouble returns a random double in {@code [0, 1)}
+         */
+        T sample(DoubleSupplier nextDouble) {
+            int index = Arrays.binarySearch(cumulativeProbabilities, nextDouble.getAsDouble());
+            // first value whose cumulative probability is strictly above the drawn one
+            int chosen = index >= 0 ? index + 1 : -index - 1;
+            return valuesByRank.get(Math.min(chosen, valuesByRank.size() - 1));
+        }
+
+        double exponent() {
+            return exponent;
+        }
+
+        List<T> valuesByRank() {
+            return valuesByRank;
+        }
+    }
+}
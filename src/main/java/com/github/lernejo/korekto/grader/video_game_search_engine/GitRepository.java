@@ -0,0 +1,81 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the history of a cloned repository through the git command line.
+ * <p>
+ * Every method gives an empty result rather than failing when git cannot answer, such as in a shallow clone,
+ * leaving callers to grade as if nothing was known of the repository.
+ */
+@SubjectForToolkitInclusion
+public class GitRepository {
+
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    private final Path root;
+
+    public GitRepository(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * @return the SHA-1 of the checked out commit
+     */
+    public Optional<String> headCommit() {
+        return git("rev-parse", "HEAD")
+            .filter(lines -> lines.size() == 1 && lines.get(0).matches("[0-9a-f]{40}"))
+            .map(lines -> lines.get(0));
+    }
+
+    /**
+     * @return the checked out commit then its ancestors, newest first
+     */
+    public List<String> ancestry(int maxCount) {
+        return git("rev-list", "--max-count=" + maxCount, "HEAD").orElse(List.of());
+    }
+
+    /**
+     * @return paths, relative to the root of the repository, of files added, changed or deleted between the given commits
+     */
+    public Optional<List<String>> changedFiles(String fromCommit, String toCommit) {
+        return git("diff", "--name-only", "--no-renames", fromCommit, toCommit);
+    }
+
+    private Optional<List<String>> git(String... arguments) {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(arguments));
+        try {
+            Process process = new ProcessBuilder(command)
+                .directory(root.toFile())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            String output;
+            try (InputStream inputStream = process.getInputStream()) {
+                output = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return Optional.empty();
+            }
+            if (process.exitValue() != 0) {
+                return Optional.empty();
+            }
+            return Optional.of(output.lines().filter(line -> !line.isBlank()).toList());
+        } catch (IOException e) {
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.lernejo.korekto.toolkit.GradePart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Grade parts of previous runs, keyed by the commit they graded, the version of the grader and the part name,
+ * so that parts of a repository unchanged since its last grading are not graded again.
+ * <p>
+ * One JSON file per commit is kept in `GRADE_CACHE_DIR`, holding the parts given by a single grader version.
+ * The grader version is a digest of the grader's code, of its runtime classpath and of its `UPPER_SNAKE` system properties,
+ * so that changing any of them regrades everything.
+ */
+public class GradeCache {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("GRADE_CACHE", "true"));
+    public static final boolean FORCE_REGRADE = Boolean.parseBoolean(System.getProperty("FORCE_REGRADE", "false"));
+    private static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home"), ".korekto", "grade-cache", "video-game-search-engine");
+
+    private final Logger logger = LoggerFactory.getLogger(GradeCache.class);
+    private final ObjectMapper om;
+    private final Path directory;
+    private final String graderVersion;
+
+    public GradeCache(ObjectMapper om) {
+        this(om, Path.of(System.getProperty("GRADE_CACHE_DIR", DEFAULT_DIRECTORY.toString())), graderVersion());
+    }
+
+    GradeCache(ObjectMapper om, Path directory, String graderVersion) {
+        this.om = om;
+        this.directory = directory;
+        this.graderVersion = graderVersion;
+    }
+
+    /**
+     * @return the grading of the given commit by this grader version, if any
+     */
+    public Optional<Entry> get(String commit) {
+        Path file = file(commit);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            CachedGrading grading = om.readValue(file.toFile(), CachedGrading.class);
+            if (!graderVersion.equals(grading.graderVersion())) {
+                return Optional.empty();
+            }
+            Map<String, GradePart> parts = new LinkedHashMap<>();
+            grading.parts().forEach((name, part) -> parts.put(name, new GradePart(name, part.grade(), part.maxGrade(), part.comments())));
+            return Optional.of(new Entry(commit, parts, grading.compiled()));
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable grade cache entry " + file + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param commits newest first, such as the ancestry of the commit to grade
+     * @return the grading of the first of the given commits graded by this grader version
+     */
+    public Optional<Entry> latest(List<String> commits) {
+        return commits.stream()
+            .filter(commit -> Files.exists(file(commit)))
+            .map(this::get)
+            .flatMap(Optional::stream)
+            .findFirst();
+    }
+
+    /**
+     * Replaces what was cached for the given commit.
+     *
+     * @param compiled whether the workspace compiled, without which parts running it cannot be reused
+     */
+    public void put(String commit, List<GradePart> parts, boolean compiled) {
+        Map<String, CachedPart> cachedParts = new LinkedHashMap<>();
+        parts.forEach(part -> cachedParts.put(part.getId(), new CachedPart(part.getGrade(), part.getMaxGrade(), part.getComments())));
+        Path file = file(commit);
+        try {
+            Files.createDirectories(directory);
+            Path temporaryFile = Files.createTempFile(directory, commit, ".tmp");
+            om.writeValue(temporaryFile.toFile(), new CachedGrading(graderVersion, compiled, cachedParts));
+            // readers never see a half-written entry
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to write grade cache entry " + file + ": " + e.getMessage());
+        }
+    }
+
+    private Path file(String commit) {
+        return directory.resolve(commit + ".json");
+    }
+
+    static String graderVersion() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Path codeLocation : codeLocations()) {
+                digest.update(codeLocation.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+                digest(digest, codeLocation);
+            }
+            System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.matches("[A-Z][A-Z0-9_]*") && !name.startsWith("GRADE_CACHE") && !name.equals("FORCE_REGRADE"))
+                .sorted()
+                .forEach(name -> digest.update((name + "=" + System.getProperty(name) + "\n").getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (IOException | URISyntaxException | NoSuchAlgorithmException | RuntimeException e) {
+            LoggerFactory.getLogger(GradeCache.class).warn("Unable to compute the grader version, cached grades will not be reused: " + e.getMessage());
+            // matches no entry, neither past nor future
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * The grader's own classes, the toolkit's and the rest of the runtime classpath, so that upgrading a dependency regrades everything too.
+     */
+    private static Set<Path> codeLocations() throws URISyntaxException {
+        Set<Path> codeLocations = new TreeSet<>();
+        codeLocations.add(Path.of(GradeCache.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toAbsolutePath().normalize());
+        codeLocations.add(Path.of(GradePart.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toAbsolutePath().normalize());
+        Arrays.stream(System.getProperty("java.class.path", "").split(File.pathSeparator))
+            .filter(entry -> !entry.isBlank())
+            .map(entry -> Path.of(entry).toAbsolutePath().normalize())
+            .filter(Files::exists)
+            .forEach(codeLocations::add);
+        return codeLocations;
+    }
+
+    private static void digest(MessageDigest digest, Path codeLocation) throws IOException {
+        if (Files.isDirectory(codeLocation)) {
+            try (Stream<Path> files = Files.walk(codeLocation)) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    digest.update(codeLocation.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            }
+        } else {
+            digest.update(Files.readAllBytes(codeLocation));
+        }
+    }
+
+    /**
+     * @param parts by name
+     */
+    public record Entry(String commit, Map<String, GradePart> parts, boolean compiled) {
+    }
+
+    record CachedGrading(String graderVersion, boolean compiled, Map<String, CachedPart> parts) {
+    }
+
+    record CachedPart(double grade, Double maxGrade, List<String> comments) {
+    }
+}
@@ -0,0 +1,289 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Timers and counters of a batch of gradings, per part, per phase of a part and per student process,
+ * written at the end of the batch both as JSON and in the Prometheus text format
+ * (to be picked by the node_exporter textfile collector), so that where grading time goes can be compared between campaigns.
+ */
+public class GradingMetrics {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("METRICS", "true"));
+    private static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home"), ".korekto", "metrics", "video-game-search-engine");
+    private static final String FILE_NAME = "grading-metrics";
+
+    public enum Phase {
+        /**
+         * Maven goals run by the grader in addition to the build of the toolkit.
+         */
+        MAVEN_RUN,
+        /**
+         * Waiting for a student server to listen on its port.
+         */
+        PORT_WAIT,
+        /**
+         * Publishing messages, or waiting for a student app to publish them.
+         */
+        PUBLISH,
+        /**
+         * Waiting for a student app to consume the messages of a queue.
+         */
+        QUEUE_DRAIN,
+        /**
+         * Waiting for documents to be searchable in Elasticsearch.
+         */
+        INDEX_WAIT,
+        /**
+         * Requests to the **search-api**.
+         */
+        HTTP_QUERY;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Outcome {
+        GRADED, REUSED, FAILED;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(GradingMetrics.class);
+    private final Instant startedAt = Instant.now();
+    private final Stat gradings = new Stat();
+    private final Map<String, Stat> parts = new ConcurrentHashMap<>();
+    private final Map<PartOutcome, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final Map<PartPhase, Stat> phases = new ConcurrentHashMap<>();
+    private final Map<String, Stat> processCpuNanos = new ConcurrentHashMap<>();
+    private final Map<String, Stat> processPeakResidentSetSizes = new ConcurrentHashMap<>();
+
+    public void recordGrading(long nanos) {
+        gradings.record(nanos);
+    }
+
+    public void recordPart(String part, Outcome outcome, long nanos) {
+        outcomes.computeIfAbsent(new PartOutcome(part, outcome), k -> new LongAdder()).increment();
+        if (outcome != Outcome.REUSED) {
+            parts.computeIfAbsent(part, k -> new Stat()).record(nanos);
+        }
+    }
+
+    public void recordPhase(String part, Phase phase, long nanos) {
+        phases.computeIfAbsent(new PartPhase(part, phase), k -> new Stat()).record(nanos);
+    }
+
+    /**
+     * Times what runs until the returned timing is closed, to be used in a try-with-resources block.
+     */
+    public Timing time(String part, Phase phase) {
+        return new Timing(part, phase, System.nanoTime());
+    }
+
+    public void recordProcess(String process, StudentProcess.Usage usage) {
+        usage.cpuNanos().ifPresent(nanos -> processCpuNanos.computeIfAbsent(process, k -> new Stat()).record(nanos));
+        usage.peakResidentSetSizeBytes().ifPresent(bytes -> processPeakResidentSetSizes.computeIfAbsent(process, k -> new Stat()).record(bytes));
+    }
+
+    /**
+     * Writes the metrics gathered so far in `METRICS_DIR`, replacing those of the previous batch.
+     */
+    public void export(ObjectMapper om) {
+        if (!ENABLED) {
+            return;
+        }
+        Path directory = Path.of(System.getProperty("METRICS_DIR", DEFAULT_DIRECTORY.toString()));
+        try {
+            Files.createDirectories(directory);
+            writeAtomically(directory, FILE_NAME + ".json", om.writerWithDefaultPrettyPrinter().writeValueAsString(snapshot()));
+            writeAtomically(directory, FILE_NAME + ".prom", prometheusText());
+            logger.info("Grading metrics written in " + directory);
+        } catch (IOException e) {
+            logger.warn("Unable to write grading metrics in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeAtomically(Path directory, String fileName, String content) throws IOException {
+        Path temporaryFile = Files.createTempFile(directory, fileName, ".tmp");
+        Files.writeString(temporaryFile, content, StandardCharsets.UTF_8);
+        // collectors never read a half-written file
+        Files.move(temporaryFile, directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    Snapshot snapshot() {
+        Set<String> partNames = new TreeSet<>();
+        outcomes.keySet().forEach(key -> partNames.add(key.part()));
+        Set<String> processNames = new TreeSet<>(processCpuNanos.keySet());
+        processNames.addAll(processPeakResidentSetSizes.keySet());
+        return new Snapshot(
+            startedAt,
+            Instant.now(),
+            gradings.seconds(),
+            partNames.stream()
+                .map(part -> new PartSnapshot(part, outcomeCounts(part), parts.getOrDefault(part, new Stat()).seconds()))
+                .toList(),
+            sorted(phases, PartPhase::toString).stream()
+                .map(e -> new PhaseSnapshot(e.getKey().part(), e.getKey().phase().label(), e.getValue().seconds()))
+                .toList(),
+            processNames.stream()
+                .map(process -> new ProcessSnapshot(process,
+                    processCpuNanos.getOrDefault(process, new Stat()).seconds(),
+                    processPeakResidentSetSizes.getOrDefault(process, new Stat()).raw()))
+                .toList());
+    }
+
+    private Map<String, Long> outcomeCounts(String part) {
+        Map<String, Long> counts = new TreeMap<>();
+        outcomes.forEach((key, count) -> {
+            if (key.part().equals(part)) {
+                counts.put(key.outcome().label(), count.sum());
+            }
+        });
+        return counts;
+    }
+
+    String prometheusText() {
+        StringBuilder text = new StringBuilder();
+        summary(text, "korekto_grading_duration_seconds", "Duration of a student's grading", Map.of(Map.of(), gradings), true);
+        summary(text, "korekto_part_duration_seconds", "Duration of a part actually graded", labelled(parts, part -> Map.of("part", part)), true);
+        text.append("# HELP korekto_parts_total Parts by outcome, reused ones coming from the grade cache\n");
+        text.append("# TYPE korekto_parts_total counter\n");
+        sorted(outcomes, PartOutcome::toString).forEach(e ->
+            sample(text, "korekto_parts_total", Map.of("part", e.getKey().part(), "outcome", e.getKey().outcome().label()), e.getValue().sum()));
+        summary(text, "korekto_phase_duration_seconds", "Duration of a phase of a part", labelled(phases, key -> Map.of("part", key.part(), "phase", key.phase().label())), true);
+        summary(text, "korekto_student_process_cpu_seconds", "CPU time of a student application, without the Maven JVM launching it", labelled(processCpuNanos, process -> Map.of("process", process)), true);
+        summary(text, "korekto_student_process_peak_resident_bytes", "Peak resident memory of a student application, without the Maven JVM launching it", labelled(processPeakResidentSetSizes, process -> Map.of("process", process)), false);
+        return text.toString();
+    }
+
+    /**
+     * @param nanos whether recorded values are durations in nanoseconds, exported in seconds
+     */
+    private static void summary(StringBuilder text, String name, String help, Map<Map<String, String>, Stat> stats, boolean nanos) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" summary\n");
+        stats.forEach((labels, stat) -> {
+            sample(text, name + "_count", labels, stat.count.sum());
+            sample(text, name + "_sum", labels, nanos ? stat.sum.sum() / 1_000_000_000D : stat.sum.sum());
+        });
+        text.append("# HELP ").append(name).append("_max ").append(help).append(", largest one\n");
+        text.append("# TYPE ").append(name).append("_max gauge\n");
+        stats.forEach((labels, stat) -> sample(text, name + "_max", labels, nanos ? stat.max.get() / 1_000_000_000D : stat.max.get()));
+    }
+
+    private static void sample(StringBuilder text, String name, Map<String, String> labels, Number value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{');
+            String separator = "";
+            for (String label : labels.keySet().stream().sorted().toList()) {
+                text.append(separator).append(label).append("=\"").append(escape(labels.get(label))).append('"');
+                separator = ",";
+            }
+            text.append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static <K> Map<Map<String, String>, Stat> labelled(Map<K, Stat> stats, Function<K, Map<String, String>> labels) {
+        Map<Map<String, String>, Stat> labelled = new LinkedHashMap<>();
+        sorted(stats, k -> labels.apply(k).toString()).forEach(e -> labelled.put(labels.apply(e.getKey()), e.getValue()));
+        return labelled;
+    }
+
+    private static <K, V> List<Map.Entry<K, V>> sorted(Map<K, V> map, Function<K, String> sortKey) {
+        return map.entrySet().stream()
+            .sorted(Comparator.comparing(e -> sortKey.apply(e.getKey())))
+            .toList();
+    }
+
+    public class Timing implements AutoCloseable {
+        private final String part;
+        private final Phase phase;
+        private final long start;
+
+        private Timing(String part, Phase phase, long start) {
+            this.part = part;
+            this.phase = phase;
+            this.start = start;
+        }
+
+        @Override
+        public void close() {
+            recordPhase(part, phase, System.nanoTime() - start);
+        }
+    }
+
+    private static class Stat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        void record(long value) {
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        StatSnapshot seconds() {
+            return new StatSnapshot(count.sum(), sum.sum() / 1_000_000_000D, max.get() / 1_000_000_000D);
+        }
+
+        StatSnapshot raw() {
+            return new StatSnapshot(count.sum(), sum.sum(), max.get());
+        }
+    }
+
+    private record PartOutcome(String part, Outcome outcome) {
+    }
+
+    private record PartPhase(String part, Phase phase) {
+    }
+
+    record Snapshot(Instant startedAt, Instant endedAt, StatSnapshot gradingSeconds, List<PartSnapshot> parts,
+                    List<PhaseSnapshot> phases, List<ProcessSnapshot> studentProcesses) {
+    }
+
+    record StatSnapshot(long count, double sum, double max) {
+    }
+
+    record PartSnapshot(String part, Map<String, Long> outcomes, StatSnapshot seconds) {
+    }
+
+    record PhaseSnapshot(String part, String phase, StatSnapshot seconds) {
+    }
+
+    /**
+     * @param peakResidentBytes summed over the processes of the application, the Maven JVM launching it excluded
+     */
+    record ProcessSnapshot(String process, StatSnapshot cpuSeconds, StatSnapshot peakResidentBytes) {
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.indices.GetIndexResponse;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Empties an index in constant time, whatever its size, by replacing it with a fresh one rather than deleting its documents.
+ * <p>
+ * The fresh index gets the mapping of the replaced one and a versioned name, then the original name is atomically made
+ * an alias of it, so that readers and writers using that name never see it missing.
+ * Replaced indexes are deleted in the background.
+ */
+@SubjectForToolkitInclusion
+public class IndexResetter {
+
+    private static final ExecutorService REAPER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "index-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicLong VERSIONS = new AtomicLong(System.currentTimeMillis());
+
+    private final Logger logger = LoggerFactory.getLogger(IndexResetter.class);
+    private final ElasticsearchClient client;
+
+    public IndexResetter(ElasticsearchClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Does nothing if there is no index of the given name yet.
+     *
+     * @param name of an index, or of an alias previously set by this method
+     */
+    public void reset(String name) {
+        try {
+            Map<String, IndexState> current = concreteIndices(name);
+            if (current.isEmpty()) {
+                return;
+            }
+            IndexState model = current.values().iterator().next();
+            String freshIndex = name + "-" + VERSIONS.incrementAndGet();
+            client.indices().create(c -> {
+                c.index(freshIndex);
+                if (model.mappings() != null) {
+                    c.mappings(model.mappings());
+                }
+                IndexSettings analysis = analysisSettings(model);
+                if (analysis != null) {
+                    c.settings(analysis);
+                }
+                return c;
+            });
+            if (current.containsKey(name)) {
+                // an index cannot be given the name of an existing one, so this one is deleted along with the swap
+                client.indices().updateAliases(u -> u
+                    .actions(a -> a.removeIndex(r -> r.index(name)))
+                    .actions(a -> a.add(add -> add.index(freshIndex).alias(name))));
+            } else {
+                client.indices().updateAliases(u -> {
+                    current.keySet().forEach(old -> u.actions(a -> a.remove(r -> r.index(old).alias(name))));
+                    return u.actions(a -> a.add(add -> add.index(freshIndex).alias(name)));
+                });
+                REAPER.execute(() -> delete(current.keySet()));
+            }
+            logger.debug("Reset [" + name + "] to fresh index [" + freshIndex + "]");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to reset index [" + name + "]: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes the given index, or all indexes behind the given alias.
+     */
+    public void delete(String name) {
+        delete(concreteIndices(name).keySet());
+    }
+
+    private void delete(Set<String> indices) {
+        if (indices.isEmpty()) {
+            return;
+        }
+        try {
+            client.indices().delete(d -> d.index(indices.stream().toList()).ignoreUnavailable(true));
+        } catch (IOException | ElasticsearchException e) {
+            logger.warn("Unable to delete indices " + indices + ": " + e.getMessage());
+        }
+    }
+
+    private Map<String, IndexState> concreteIndices(String name) {
+        try {
+            GetIndexResponse response = client.indices().get(g -> g.index(name).ignoreUnavailable(true).allowNoIndices(true));
+            return response.result();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to get index [" + name + "]: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Only analysis settings are carried over, others (uuid, creation date, ...) belong to the replaced index.
+     */
+    private static IndexSettings analysisSettings(IndexState model) {
+        IndexSettings settings = model.settings();
+        if (settings == null) {
+            return null;
+        }
+        IndexSettings indexSettings = settings.index() != null ? settings.index() : settings;
+        if (indexSettings.analysis() == null) {
+            return null;
+        }
+        return IndexSettings.of(s -> s.analysis(indexSettings.analysis()));
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Draws distinct indexes uniformly from {@code [0, population)} in O(count) time and memory,
+ * whatever the size of the population.
+ * <p>
+ * This is a partial Fisher-Yates shuffle over a virtual identity array: only the slots that were swapped are
+ * recorded, in a primitive open-addressing map, so neither the population nor an index array of its size is copied.
+ */
+public class IndexSampler {
+
+    private static final int EMPTY = -1;
+
+    private IndexSampler() {
+    }
+
+    /**
+     * @param nextInt given a bound, returns a random int in {@code [0, bound)}
+     */
+    public static int[] sample(int population, int count, IntUnaryOperator nextInt) {
+        if (count < 0 || count > population) {
+            throw new IllegalArgumentException("Cannot sample " + count + " elements out of " + population);
+        }
+        int[] sample = new int[count];
+        SwapMap swaps = new SwapMap(count);
+        for (int i = 0; i < count; i++) {
+            int j = i + nextInt.applyAsInt(population - i);
+            sample[i] = swaps.get(j);
+            swaps.put(j, swaps.get(i));
+        }
+        return sample;
+    }
+
+    /**
+     * Slot to value of the virtual array, slots never written hold their own index.
+     */
+    private static final class SwapMap {
+        private final int[] keys;
+        private final int[] values;
+        private final int mask;
+        private final int shift;
+
+        private SwapMap(int expectedWrites) {
+            int capacity = Integer.highestOneBit(Math.max(2, expectedWrites) * 2 - 1) << 1;
+            keys = new int[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+            shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int get(int key) {
+            for (int slot = hash(key); ; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                if (keys[slot] == EMPTY) {
+                    return key;
+                }
+            }
+        }
+
+        void put(int key, int value) {
+            int slot = hash(key);
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private int hash(int key) {
+            return (key * 0x9E3779B9) >>> shift;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compares the documents of an index with an expected set of keys, reading the index a page at a time
+ * through a point-in-time and `search_after`, so that indexes of any size are verified in bounded memory.
+ * <p>
+ * Expected keys are held as sorted 64-bit hashes along with a bit per key telling whether it was found,
+ * rather than as strings.
+ */
+@SubjectForToolkitInclusion
+public class IndexVerifier {
+
+    public static final int DEFAULT_PAGE_SIZE = Integer.parseInt(System.getProperty("ES_VERIFY_PAGE_SIZE", "1000"));
+    private static final String KEEP_ALIVE = "1m";
+    private static final int MAX_REPORTED_KEYS = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(IndexVerifier.class);
+    private final ElasticsearchClient client;
+    private final int pageSize;
+
+    public IndexVerifier(ElasticsearchClient client) {
+        this(client, DEFAULT_PAGE_SIZE);
+    }
+
+    public IndexVerifier(ElasticsearchClient client, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive, got " + pageSize);
+        }
+        this.client = client;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @param keyOf        what identifies a document, such as its id or title
+     * @param expectedKeys iterated over twice: once to hash them, once more to name the missing ones
+     */
+    public <T> Verification verify(String indexName, Class<T> documentClass, Function<T, String> keyOf, Collection<String> expectedKeys) {
+        long[] expectedHashes = expectedKeys.stream().mapToLong(IndexVerifier::hash).sorted().distinct().toArray();
+        BitSet found = new BitSet(expectedHashes.length);
+        long documents = 0;
+        long duplicated = 0;
+        long unexpected = 0;
+        List<String> unexpectedExamples = new ArrayList<>();
+
+        String pitId = openPointInTime(indexName);
+        try {
+            List<FieldValue> searchAfter = null;
+            while (true) {
+                SearchResponse<T> page = page(pitId, searchAfter, documentClass);
+                List<Hit<T>> hits = page.hits().hits();
+                for (Hit<T> hit : hits) {
+                    documents++;
+                    String key = hit.source() == null ? null : keyOf.apply(hit.source());
+                    int position = key == null ? -1 : Arrays.binarySearch(expectedHashes, hash(key));
+                    if (position < 0) {
+                        unexpected++;
+                        if (unexpectedExamples.size() < MAX_REPORTED_KEYS) {
+                            unexpectedExamples.add(key);
+                        }
+                    } else if (found.get(position)) {
+                        duplicated++;
+                    } else {
+                        found.set(position);
+                    }
+                }
+                if (hits.size() < pageSize) {
+                    break;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+                if (page.pitId() != null) {
+                    pitId = page.pitId();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read index [" + indexName + "]: " + e.getMessage(), e);
+        } finally {
+            closePointInTime(pitId);
+        }
+
+        long missing = expectedHashes.length - found.cardinality();
+        List<String> missingExamples = missing == 0 ? List.of() : expectedKeys.stream()
+            .filter(key -> !found.get(Arrays.binarySearch(expectedHashes, hash(key))))
+            .distinct()
+            .limit(MAX_REPORTED_KEYS)
+            .toList();
+        return new Verification(expectedHashes.length, documents, missing, duplicated, unexpected, missingExamples, unexpectedExamples);
+    }
+
+    private <T> SearchResponse<T> page(String pitId, List<FieldValue> searchAfter, Class<T> documentClass) throws IOException {
+        return client.search(s -> {
+            s.size(pageSize)
+                .pit(p -> p.id(pitId).keepAlive(k -> k.time(KEEP_ALIVE)))
+                // the cheapest total order there is, only valid along with a point-in-time
+                .sort(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                .trackTotalHits(t -> t.enabled(false));
+            if (searchAfter != null) {
+                s.searchAfter(searchAfter);
+            }
+            return s;
+        }, documentClass);
+    }
+
+    private String openPointInTime(String indexName) {
+        try {
+            return client.openPointInTime(o -> o.index(indexName).keepAlive(k -> k.time(KEEP_ALIVE))).id();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open a point in time on [" + indexName + "]: " + e.getMessage(), e);
+        }
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            client.closePointInTime(c -> c.id(pitId));
+        } catch (IOException | RuntimeException e) {
+            // expires by itself after the keep-alive
+            logger.debug("Unable to close point in time: " + e.getMessage());
+        }
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, then mixed so that close keys do not give close hashes.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @param expected           count of distinct expected keys
+     * @param documents          count of documents in the index
+     * @param missingExamples    first expected keys not found
+     * @param unexpectedExamples first keys of documents not expected
+     */
+    public record Verification(long expected,
+                               long documents,
+                               long missing,
+                               long duplicated,
+                               long unexpected,
+                               List<String> missingExamples,
+                               List<String> unexpectedExamples) {
+
+        public boolean matches() {
+            return missing == 0 && duplicated == 0 && unexpected == 0;
+        }
+    }
+}
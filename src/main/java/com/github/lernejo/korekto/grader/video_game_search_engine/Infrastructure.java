@@ -0,0 +1,40 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The RabbitMQ broker and Elasticsearch cluster that students' apps and part graders are connected to.
+ * <p>
+ * Dockerized by default, another implementation can be given by its class name with the `INFRASTRUCTURE` system property,
+ * such as in-JVM stand-ins for the grader's own tests.
+ */
+public interface Infrastructure extends AutoCloseable {
+
+    int rabbitMqPort();
+
+    int elasticSearchPort();
+
+    void createVirtualHost(String virtualHost);
+
+    void deleteVirtualHost(String virtualHost);
+
+    @Override
+    void close();
+
+    static Infrastructure create() {
+        String className = System.getProperty("INFRASTRUCTURE");
+        if (className == null || className.isBlank()) {
+            return new DockerInfrastructure();
+        }
+        try {
+            return Class.forName(className)
+                .asSubclass(Infrastructure.class)
+                .getDeclaredConstructor()
+                .newInstance();
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create infrastructure " + className + ": " + e.getMessage(), e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Unable to start infrastructure " + className + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
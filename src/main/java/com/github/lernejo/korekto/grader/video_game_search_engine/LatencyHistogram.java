@@ -0,0 +1,102 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of recorded latencies in log-linear buckets, as HdrHistogram does,
+ * so that any percentile is known within 1% in a fixed amount of memory, whatever the count of values.
+ * <p>
+ * Values below 128 have their own bucket, then each power of two is split in 128 buckets of equal width.
+ * Safe to record into from several threads.
+ */
+@SubjectForToolkitInclusion
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS;
+
+    private final TimeUnit unit;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT * SUB_BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param unit of recorded values, and of reported ones
+     */
+    public LatencyHistogram(TimeUnit unit) {
+        this.unit = unit;
+    }
+
+    public void recordNanos(long nanos) {
+        record(unit.convert(nanos, TimeUnit.NANOSECONDS));
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Latency cannot be negative, got " + value);
+        }
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return totalCount.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile in {@code [0, 100]}
+     * @return the highest value in the bucket of the value at the given percentile, 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in [0, 100], got " + percentile);
+        }
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100 * total));
+        long cumulated = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            cumulated += counts.get(index);
+            if (cumulated >= rank) {
+                return Math.min(highestValueOf(index), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public TimeUnit unit() {
+        return unit;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestValueOf(int index) {
+        int bucket = index / SUB_BUCKET_COUNT;
+        if (bucket == 0) {
+            return index;
+        }
+        int shift = bucket - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
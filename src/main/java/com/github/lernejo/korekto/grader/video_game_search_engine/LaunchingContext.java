@@ -1,51 +1,92 @@
 package com.github.lernejo.korekto.grader.video_game_search_engine;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.json.jackson.JacksonJsonpMapper;
-import co.elastic.clients.transport.ElasticsearchTransport;
-import co.elastic.clients.transport.rest_client.RestClientTransport;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.lernejo.korekto.toolkit.GradingConfiguration;
 import com.github.lernejo.korekto.toolkit.GradingContext;
 import com.github.lernejo.korekto.toolkit.misc.RandomSupplier;
 import com.github.lernejo.korekto.toolkit.partgrader.MavenContext;
-import com.rabbitmq.client.ConnectionFactory;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.elasticsearch.client.RestClient;
+import com.github.lernejo.korekto.toolkit.thirdparty.maven.MavenExecutionHandle;
+import com.github.lernejo.korekto.toolkit.thirdparty.maven.MavenExecutor;
+import com.rabbitmq.client.Connection;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import retrofit2.Retrofit;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Supplier;
 
+import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.MavenCompileTestAndDownloadAdditionalPluginsPartGrader.SPRING_BOOT_PLUGIN;
+
 public class LaunchingContext extends GradingContext implements MavenContext {
+    public static final String SEARCH_API_MODULE = "search-api";
+    public static final String FILE_INJECTOR_MODULE = "file-injector";
     public static RandomSupplier RANDOM = RandomSupplier.createRandom();
+    private static final Logger logger = LoggerFactory.getLogger(LaunchingContext.class);
     public final ObjectMapper om;
+    public final GameCatalog catalog;
     public final List<Game> games;
     public final Integer rabbitMqPort;
+    public final String rabbitMqVirtualHost;
+    /**
+     * The search-api stays up from Part 4 to Part 6, so the file-injector publishes elsewhere not to be consumed by it.
+     */
+    public final String fileInjectorVirtualHost;
     public final int elasticSearchPort;
-    public final int webPort = 8085;
+    public final int webPort = FreePorts.reserve();
+    /**
+     * Students' apps use the fixed index name `games`, so unlike queues (isolated by virtual host),
+     * the index is shared between concurrent gradings and parts using it must hold this lock.
+     * It is held from the reset of the index to the verification of its content only, students' apps being started before,
+     * except by *Part 4* which deletes the index before the first start of the search-api to check that it is created on boot.
+     * <p>
+     * Students' own tests, run by *Part 1* with the same Elasticsearch, are not covered:
+     * holding the lock over a whole build would serialize builds, so a test using the index may race with another grading.
+     */
+    public final Lock elasticsearchIndexLock;
+    private final ClientPools clientPools;
+    /**
+     * Shared by all gradings of the batch.
+     */
+    public final GradingMetrics metrics;
     public final GameApiClient gameApiClient;
     private final Supplier<SilentJacksonConverterFactory.ExceptionHolder> exceptionHolderSupplier;
+    private final Map<String, PackagedModule> packagedModules = new ConcurrentHashMap<>();
+    private ModuleLaunchSession searchApiSession;
     private boolean compilationFailed;
     private boolean testFailed;
     public boolean rabbitQueueCreated = true;
     public boolean elasticsearchIndexCreated = true;
     public final long serverStartTimeout = Long.valueOf(System.getProperty("SERVER_START_TIMEOUT", "40"));
     public final long injectorStartTimeout = Long.valueOf(System.getProperty("INJECTOR_START_TIMEOUT", "20"));
+    public final boolean packagedLaunch = Boolean.parseBoolean(System.getProperty("PACKAGED_LAUNCH", "false"));
+    /**
+     * Drawn once per grading, everything a part draws (games selected or generated, counts, queries) only depends on it and on the part,
+     * whatever the other parts running concurrently draw.
+     */
+    public final long seed = Long.parseLong(System.getProperty("GRADING_SEED", String.valueOf(RANDOM.nextUuid().getMostSignificantBits())));
 
-    public LaunchingContext(GradingConfiguration configuration, ObjectMapper om, List<Game> games, Integer rabbitMqPort, int elasticSearchPort) {
+    public LaunchingContext(GradingConfiguration configuration, ObjectMapper om, GameCatalog catalog, Integer rabbitMqPort, String rabbitMqVirtualHost, int elasticSearchPort, Lock elasticsearchIndexLock, ClientPools clientPools, GradingMetrics metrics) {
         super(configuration);
         this.om = om;
-        this.games = games;
+        this.catalog = catalog;
+        this.games = catalog.games();
         this.rabbitMqPort = rabbitMqPort;
+        this.rabbitMqVirtualHost = rabbitMqVirtualHost;
+        this.fileInjectorVirtualHost = fileInjectorVirtualHost(rabbitMqVirtualHost);
         this.elasticSearchPort = elasticSearchPort;
+        this.elasticsearchIndexLock = elasticsearchIndexLock;
+        this.clientPools = clientPools;
+        this.metrics = metrics;
         SilentJacksonConverterFactory jacksonConverterFactory = SilentJacksonConverterFactory.create(om);
         this.gameApiClient = new Retrofit.Builder()
             .baseUrl("http://localhost:" + webPort + "/")
@@ -53,22 +94,96 @@ public class LaunchingContext extends GradingContext implements MavenContext {
             .build()
             .create(GameApiClient.class);
         this.exceptionHolderSupplier = jacksonConverterFactory::newExceptionHolder;
+        logger.info("Games of grading " + rabbitMqVirtualHost + " are drawn from seed " + seed + " (replay with -DGRADING_SEED=" + seed + ")");
+    }
+
+    public static String fileInjectorVirtualHost(String rabbitMqVirtualHost) {
+        return rabbitMqVirtualHost + "-file-injector";
+    }
+
+    /**
+     * @return the connection shared by all users of the given virtual host, not to be closed
+     */
+    public Connection amqpConnection(String virtualHost) {
+        return clientPools.amqpConnection(virtualHost);
+    }
+
+    /**
+     * @return a channel to give back by closing the lease, and not the channel itself
+     */
+    public ClientPools.ChannelLease leaseChannel(String virtualHost) {
+        return clientPools.leaseChannel(virtualHost);
+    }
+
+    public String infrastructureArguments() {
+        return infrastructureArguments(rabbitMqVirtualHost);
+    }
+
+    public String infrastructureArguments(String virtualHost) {
+        return "-Dspring.rabbitmq.port=" + rabbitMqPort + " -Dspring.rabbitmq.virtual-host=" + virtualHost + " -Delasticsearch.port=" + elasticSearchPort;
+    }
+
+    public void addPackagedModule(PackagedModule packagedModule) {
+        packagedModules.put(packagedModule.module(), packagedModule);
+    }
+
+    /**
+     * Runs the given module from its packaged jar if any, or else with the Spring Boot plugin through the toolkit's Maven executor,
+     * with its output watched for startup failures and its resource usage recorded when it is closed.
+     * <p>
+     * Through Maven, the output of Maven and of the application are written to files, as the toolkit does not give them back.
+     *
+     * @param applicationArguments may be null
+     */
+    public StudentProcess startSpringBootModule(String module, String jvmArguments, String applicationArguments) {
+        PackagedModule packagedModule = packagedModules.get(module);
+        if (packagedModule != null) {
+            return StudentProcess.start(module, getExercise().getRoot().resolve(module), packagedModule.command(jvmArguments, applicationArguments))
+                .onClose(usage -> metrics.recordProcess(module, usage));
+        }
+        Path mavenLog = createTempFile(module, "maven.log");
+        Path applicationLog = createTempFile(module, "application.log");
+        String goal = SPRING_BOOT_PLUGIN + ":run -pl :" + module + " -l " + mavenLog
+            + " -Dspring-boot.run.jvmArguments='" + jvmArguments + " -Dlogging.file.name=" + applicationLog + "'"
+            + (applicationArguments != null ? " -Dspring-boot.run.arguments='" + applicationArguments + "'" : "");
+        MavenExecutionHandle handle = MavenExecutor.executeGoalAsync(getExercise(), getConfiguration().getWorkspace(), goal);
+        return StudentProcess.watch(module, handle, mavenLog.toString(), List.of(mavenLog, applicationLog))
+            .onClose(usage -> metrics.recordProcess(module, usage));
+    }
+
+    private static Path createTempFile(String module, String suffix) {
+        try {
+            return Files.createTempFile("korekto-" + module, suffix).toAbsolutePath();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create output file of " + module + ": " + e.getMessage(), e);
+        }
     }
 
-    public ConnectionFactory newConnectionFactory() {
-        ConnectionFactory factory = new ConnectionFactory();
-        factory.setPort(rabbitMqPort);
-        return factory;
+    public synchronized ModuleLaunchSession searchApi() {
+        if (searchApiSession == null) {
+            searchApiSession = new ModuleLaunchSession(this, SEARCH_API_MODULE, webPort, "-Dserver.port=" + webPort + " " + infrastructureArguments());
+        }
+        return searchApiSession;
     }
 
-    public ElasticsearchClient newElasticsearchClient() {
-        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-        credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("elastic", "admin"));
-        RestClient restClient = RestClient.builder(new HttpHost("localhost", elasticSearchPort))
-            .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider))
-            .build();
-        ElasticsearchTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper(om));
-        return new ElasticsearchClient(transport);
+    /**
+     * Stops the student's servers, then gives the web port back for later gradings.
+     */
+    public synchronized void closeLaunchSessions() {
+        try {
+            if (searchApiSession != null) {
+                searchApiSession.close();
+            }
+        } finally {
+            FreePorts.release(webPort);
+        }
+    }
+
+    /**
+     * @return a client shared by all gradings, not to be closed
+     */
+    public ElasticsearchClient elasticsearchClient() {
+        return clientPools.elasticsearchClient();
     }
 
     @Override
@@ -91,11 +206,35 @@ public class LaunchingContext extends GradingContext implements MavenContext {
         return testFailed;
     }
 
+    /**
+     * @return exactly {@code count} distinct games of the catalog, drawn from a random source of its own seeded for the given part
+     */
+    @NotNull
+    public List<Game> selectGames(String part, int count) {
+        return selectGames(newRandom(part), count);
+    }
+
+    /**
+     * @param random drawn from {@link #newRandom(String)}, for parts drawing more than the games
+     * @return exactly {@code count} distinct games of the catalog
+     */
     @NotNull
-    public List<Game> selectGames(int count) {
-        List<Game> gameCatalog = new ArrayList<>(games);
-        Collections.shuffle(gameCatalog);
-        return gameCatalog.subList(0, count);
+    public List<Game> selectGames(Random random, int count) {
+        return catalog.select(count, random::nextInt);
+    }
+
+    /**
+     * @return a generator of games modelled on the catalog, drawing from a random source of its own seeded for the given part
+     */
+    public GameGenerator newGameGenerator(String part) {
+        return new GameGenerator(games, newRandom(part)::nextInt);
+    }
+
+    /**
+     * @return a random source of its own for the given part, to draw everything the part draws from, so that the grading can be replayed
+     */
+    public Random newRandom(String part) {
+        return new Random(31 * seed + part.hashCode());
     }
 
     public void setRabbitQueueNotCreated() {
@@ -109,8 +248,4 @@ public class LaunchingContext extends GradingContext implements MavenContext {
     public SilentJacksonConverterFactory.ExceptionHolder newExceptionHolder() {
         return exceptionHolderSupplier.get();
     }
-
-    public RandomSupplier randomSource() {
-        return RANDOM;
-    }
 }
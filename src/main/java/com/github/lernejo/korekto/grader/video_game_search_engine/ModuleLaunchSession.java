@@ -0,0 +1,62 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.misc.Ports;
+
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A student server module started at most once per grading, on first demand, and shared by all parts needing it.
+ */
+public class ModuleLaunchSession implements AutoCloseable {
+
+    private final LaunchingContext context;
+    private final String module;
+    private final int port;
+    private final String jvmArguments;
+    private boolean startAttempted;
+    private StudentProcess process;
+    private String startFailure;
+
+    ModuleLaunchSession(LaunchingContext context, String module, int port, String jvmArguments) {
+        this.context = context;
+        this.module = module;
+        this.port = port;
+        this.jvmArguments = jvmArguments;
+    }
+
+    /**
+     * @param part the part needing the module, to which the wait for its start is accounted
+     * @return the reason why the module could not be started, if so; the same outcome is given to every caller
+     */
+    public synchronized Optional<String> ensureStarted(String part) {
+        if (!startAttempted) {
+            startAttempted = true;
+            start(part);
+        }
+        return Optional.ofNullable(startFailure);
+    }
+
+    private void start(String part) {
+        process = context.startSpringBootModule(module, jvmArguments, null);
+        try (var ignored = context.metrics.time(part, GradingMetrics.Phase.PORT_WAIT)) {
+            startFailure = process.awaitPort(port, context.serverStartTimeout, SECONDS).orElse(null);
+        }
+        if (startFailure != null) {
+            close();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (process != null) {
+            try {
+                process.close();
+            } finally {
+                process = null;
+                Ports.waitForPortToBeFreed(port, SECONDS, 5L);
+            }
+        }
+    }
+}
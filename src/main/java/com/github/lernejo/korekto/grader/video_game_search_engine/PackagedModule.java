@@ -0,0 +1,117 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * A student module packaged as a plain jar, started as a JVM on its runtime classpath without going through Maven.
+ * <p>
+ * Modules are not repackaged as Spring Boot fat jars: the goal would also run on the library modules they depend on,
+ * failing on those without a main class and breaking the compilation of their dependents for the others.
+ *
+ * @param classpath the jar of the module then its runtime dependencies, sibling modules being their own jars
+ */
+public record PackagedModule(String module, List<Path> classpath, String mainClass) {
+
+    /**
+     * Where the runtime classpath of each module is written by the packaging build.
+     */
+    public static final String CLASSPATH_FILE = "target/korekto-classpath.txt";
+    private static final String SPRING_BOOT_APPLICATION_DESCRIPTOR = "Lorg/springframework/boot/autoconfigure/SpringBootApplication;";
+
+    public static Optional<PackagedModule> find(Path projectRoot, String module) {
+        Path moduleRoot = projectRoot.resolve(module);
+        Path classpathFile = moduleRoot.resolve(CLASSPATH_FILE);
+        if (!Files.isRegularFile(classpathFile)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.list(moduleRoot.resolve("target"))) {
+            List<Path> jars = files
+                .filter(p -> p.getFileName().toString().endsWith(".jar"))
+                .filter(p -> !p.getFileName().toString().matches(".*-(sources|javadoc|tests)\\.jar"))
+                .toList();
+            if (jars.size() != 1) {
+                return Optional.empty();
+            }
+            Path jar = jars.get(0);
+            Optional<String> mainClass = findMainClass(jar);
+            if (mainClass.isEmpty()) {
+                return Optional.empty();
+            }
+            List<Path> classpath = new ArrayList<>();
+            classpath.add(jar);
+            Arrays.stream(Files.readString(classpathFile, StandardCharsets.UTF_8).trim().split(File.pathSeparator))
+                .filter(entry -> !entry.isBlank())
+                .map(Path::of)
+                .forEach(classpath::add);
+            return Optional.of(new PackagedModule(module, classpath, mainClass.get()));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return the only class of the jar annotated with `@SpringBootApplication`, if exactly one is
+     */
+    static Optional<String> findMainClass(Path jar) throws IOException {
+        byte[] descriptor = SPRING_BOOT_APPLICATION_DESCRIPTOR.getBytes(StandardCharsets.UTF_8);
+        List<String> candidates = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                try (InputStream inputStream = jarFile.getInputStream(entry)) {
+                    if (contains(inputStream.readAllBytes(), descriptor)) {
+                        candidates.add(entry.getName().replace('/', '.').substring(0, entry.getName().length() - ".class".length()));
+                    }
+                }
+            }
+        }
+        return candidates.size() == 1 ? Optional.of(candidates.get(0)) : Optional.empty();
+    }
+
+    private static boolean contains(byte[] bytes, byte[] searched) {
+        outer:
+        for (int i = 0; i <= bytes.length - searched.length; i++) {
+            for (int j = 0; j < searched.length; j++) {
+                if (bytes[i + j] != searched[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param jvmArguments         space-separated
+     * @param applicationArguments may be null
+     */
+    public List<String> command(String jvmArguments, String applicationArguments) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(jvmArguments.trim().split("\\s+")));
+        command.add("-cp");
+        command.add(String.join(File.pathSeparator, classpath.stream().map(Path::toString).toList()));
+        command.add(mainClass);
+        if (applicationArguments != null) {
+            command.add(applicationArguments);
+        }
+        return command;
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import java.util.function.Predicate;
+
+/**
+ * What the result of a part depends on, telling whether the result of a previous grading can be reused.
+ *
+ * @param reusable  false for parts depending on remote state, such as CI runs, always graded again
+ * @param builds    whether the part compiles the workspace that parts needing it run
+ * @param changedBy whether the given changes may change the result of the part
+ */
+public record PartInputs(boolean reusable, boolean builds, Predicate<ChangeSet> changedBy) {
+
+    public static PartInputs remote() {
+        return new PartInputs(false, false, changes -> true);
+    }
+
+    public static PartInputs history() {
+        return new PartInputs(true, false, ChangeSet::newCommits);
+    }
+
+    public static PartInputs javaSources() {
+        return new PartInputs(true, false, ChangeSet::touchesJavaSources);
+    }
+
+    public static PartInputs build() {
+        return new PartInputs(true, true, ChangeSet::touchesBuild);
+    }
+
+    /**
+     * For parts reading what the build produced, such as test reports.
+     */
+    public static PartInputs buildOutput() {
+        return new PartInputs(true, false, ChangeSet::touchesBuild);
+    }
+
+    /**
+     * For parts running a single module.
+     */
+    public static PartInputs module(String module) {
+        return new PartInputs(true, false, changes -> changes.touchesSharedFiles() || changes.touchesModule(module));
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.grader.video_game_search_engine.ResourceTokens.Token;
+
+/**
+ * What a part needs to be graded, telling which parts of a grading can run at the same time,
+ * and which tokens, bounding concurrent gradings, it holds.
+ */
+public enum PartNeed {
+    /**
+     * The workspace as compiled by the building part, which must be done first.
+     */
+    COMPILED_WORKSPACE(false, null),
+    /**
+     * The grading's RabbitMQ virtual hosts and the shared Elasticsearch index, used by one part at a time.
+     */
+    BROKERS(true, Token.LAUNCH),
+    /**
+     * The port the **search-api** listens on, used by one part at a time.
+     */
+    WEB_PORT(true, null),
+    /**
+     * A share of the host's CPUs, bounded across gradings.
+     */
+    CPU(false, Token.BUILD);
+
+    private final boolean exclusive;
+    private final Token token;
+
+    PartNeed(boolean exclusive, Token token) {
+        this.exclusive = exclusive;
+        this.token = token;
+    }
+
+    /**
+     * @return whether parts of a grading needing it run one at a time
+     */
+    public boolean exclusive() {
+        return exclusive;
+    }
+
+    /**
+     * @return the token to hold while using it, shared by all gradings, if any
+     */
+    public Token token() {
+        return token;
+    }
+}
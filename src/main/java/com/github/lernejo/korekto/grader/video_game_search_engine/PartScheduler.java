@@ -0,0 +1,97 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.GradePart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Grades the parts of a grading concurrently where their needs allow it, and gives their results in plan order.
+ * <p>
+ * A part needing the compiled workspace starts once the building parts are done.
+ * Parts needing the same exclusive resource run one at a time, in plan order.
+ * Parts needing neither, such as static analyses of the sources, run alongside the build and the launches.
+ * Each part is submitted once its predecessors are done, so that the bounded executor is never held by a waiting part.
+ */
+public class PartScheduler implements AutoCloseable {
+
+    public static final int PARALLELISM = Integer.parseInt(System.getProperty("PART_PARALLELISM", "4"));
+
+    private final ExecutorService executor;
+
+    public PartScheduler() {
+        this(PARALLELISM);
+    }
+
+    public PartScheduler(int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "part-grader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param grade grades a single part, called from the threads of the executor
+     * @throws RuntimeException the first failure of a part, in plan order, once all parts are done
+     */
+    public List<GradePart> grade(List<PlannedPart> plannedParts, Function<PlannedPart, GradePart> grade) {
+        List<CompletableFuture<GradePart>> results = new ArrayList<>();
+        for (int i = 0; i < plannedParts.size(); i++) {
+            PlannedPart plannedPart = plannedParts.get(i);
+            CompletableFuture<?>[] predecessors = predecessors(plannedParts, i).stream()
+                .map(results::get)
+                .toArray(CompletableFuture[]::new);
+            results.add(CompletableFuture.allOf(predecessors).thenApplyAsync(ignored -> grade.apply(plannedPart), executor));
+        }
+        try {
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            // reported below in plan order
+        }
+        return results.stream().map(PartScheduler::joinUnwrapped).toList();
+    }
+
+    /**
+     * @return indexes of the parts which must be done before the part at the given index starts
+     */
+    static List<Integer> predecessors(List<PlannedPart> plannedParts, int index) {
+        PlannedPart plannedPart = plannedParts.get(index);
+        List<Integer> predecessors = new ArrayList<>();
+        for (int j = 0; j < plannedParts.size(); j++) {
+            PlannedPart other = plannedParts.get(j);
+            boolean builder = other.inputs().builds() && plannedPart.needsCompiledWorkspace();
+            boolean earlierConflicting = j < index && plannedPart.conflictsWith(other);
+            if (j != index && (builder || earlierConflicting)) {
+                predecessors.add(j);
+            }
+        }
+        return predecessors;
+    }
+
+    private static GradePart joinUnwrapped(CompletableFuture<GradePart> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.GradePart;
+import com.github.lernejo.korekto.toolkit.PartGrader;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A part grader along with what its result depends on and what it needs to be graded.
+ */
+public record PlannedPart(PartGrader<LaunchingContext> grader, PartInputs inputs, Set<PartNeed> needs) {
+
+    public PlannedPart(PartGrader<LaunchingContext> grader, PartInputs inputs, PartNeed... needs) {
+        this(grader, inputs, needs.length == 0 ? Set.of() : Set.copyOf(EnumSet.of(needs[0], needs)));
+    }
+
+    public String name() {
+        return grader.name();
+    }
+
+    public boolean needsCompiledWorkspace() {
+        return needs.contains(PartNeed.COMPILED_WORKSPACE);
+    }
+
+    /**
+     * @return whether both parts need a resource which only one part at a time can use
+     */
+    public boolean conflictsWith(PlannedPart other) {
+        return needs.stream().anyMatch(need -> need.exclusive() && other.needs.contains(need));
+    }
+
+    /**
+     * Parts whose inputs did not change since a previous grading are reused from it, unless they run a build
+     * which is made again for other parts, in which case the building part is graded again as well.
+     *
+     * @return reusable parts of the previous grading, by name
+     */
+    public static Map<String, GradePart> reusableParts(List<PlannedPart> plannedParts, GradeCache.Entry previousGrading, ChangeSet changes) {
+        Map<String, GradePart> reusable = new LinkedHashMap<>();
+        for (PlannedPart plannedPart : plannedParts) {
+            PartInputs inputs = plannedPart.inputs();
+            GradePart previousPart = previousGrading.parts().get(plannedPart.name());
+            if (inputs.reusable()
+                && previousPart != null
+                && !inputs.changedBy().test(changes)
+                && (!plannedPart.needsCompiledWorkspace() || previousGrading.compiled())) {
+                reusable.put(plannedPart.name(), previousPart);
+            }
+        }
+        boolean buildNeeded = plannedParts.stream().anyMatch(p -> p.needsCompiledWorkspace() && !reusable.containsKey(p.name()));
+        if (buildNeeded) {
+            plannedParts.stream().filter(p -> p.inputs().builds()).forEach(p -> reusable.remove(p.name()));
+        }
+        return reusable;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Minimal client of the RabbitMQ management HTTP API, used to give each grading its own virtual host.
+ */
+@SubjectForToolkitInclusion
+public class RabbitMqManagementClient {
+
+    private static final String USER = "guest";
+    private static final String PASSWORD = "guest";
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String baseUrl;
+    private final String authorization;
+
+    public RabbitMqManagementClient(int managementPort) {
+        this.baseUrl = "http://localhost:" + managementPort + "/api";
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString((USER + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void createVirtualHost(String virtualHost) {
+        send("PUT", "/vhosts/" + encode(virtualHost), "{}");
+        send("PUT", "/permissions/" + encode(virtualHost) + "/" + USER, """
+            {"configure": ".*", "write": ".*", "read": ".*"}""");
+    }
+
+    public void deleteVirtualHost(String virtualHost) {
+        send("DELETE", "/vhosts/" + encode(virtualHost), null);
+    }
+
+    private void send(String method, String path, String body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(10))
+            .header("Authorization", authorization)
+            .header("Content-Type", "application/json")
+            .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 300 && !(method.equals("DELETE") && response.statusCode() == 404)) {
+                throw new IllegalStateException("RabbitMQ management call " + method + " " + path + " failed with " + response.statusCode() + ": " + response.body());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to reach RabbitMQ management API: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calling RabbitMQ management API", e);
+        }
+    }
+
+    private static String encode(String segment) {
+        return URLEncoder.encode(segment, StandardCharsets.UTF_8);
+    }
+}
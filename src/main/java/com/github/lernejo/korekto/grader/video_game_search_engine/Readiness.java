@@ -0,0 +1,145 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.HealthStatus;
+import co.elastic.clients.transport.TransportException;
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.testcontainers.shaded.org.awaitility.Awaitility;
+import org.testcontainers.shaded.org.awaitility.core.ConditionFactory;
+import org.testcontainers.shaded.org.awaitility.pollinterval.FibonacciPollInterval;
+import org.testcontainers.shaded.org.awaitility.pollinterval.PollInterval;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Waits returning as soon as the awaited condition holds.
+ * <p>
+ * Brokers are notified-upon when they support it (consumer deliveries, cluster health waits),
+ * other conditions are polled with a growing interval, capped so that a condition holding late in a long wait is noticed early.
+ */
+@SubjectForToolkitInclusion
+public class Readiness {
+
+    private static final long PRODUCER_CHECK_INTERVAL_MILLIS = 100L;
+    private static final long IN_FLIGHT_GRACE_MILLIS = 500L;
+    private static final long CLUSTER_RETRY_INTERVAL_MILLIS = 500L;
+    private static final Duration MAX_POLL_INTERVAL = Duration.ofMillis(100L);
+    private static final PollInterval FIBONACCI_POLL_INTERVAL = new FibonacciPollInterval(8, MILLISECONDS);
+
+    private Readiness() {
+    }
+
+    /**
+     * Polls first immediately, then after 21ms, 34ms, 55ms, 89ms, and every 100ms from there on.
+     */
+    public static ConditionFactory await() {
+        return Awaitility.await()
+            .pollDelay(Duration.ZERO)
+            .pollInterval(Readiness::nextPollInterval);
+    }
+
+    private static Duration nextPollInterval(int pollCount, Duration previousDuration) {
+        Duration next = FIBONACCI_POLL_INTERVAL.next(pollCount, previousDuration);
+        return next.compareTo(MAX_POLL_INTERVAL) > 0 ? MAX_POLL_INTERVAL : next;
+    }
+
+    /**
+     * Lets Elasticsearch hold the request until the cluster can serve requests, and retries while it is not even listening.
+     *
+     * @return false if the cluster was not available in time
+     */
+    public static boolean awaitClusterAvailable(ElasticsearchClient client, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (System.nanoTime() < deadline) {
+            try {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (!client.cluster().health(h -> h
+                        .waitForStatus(HealthStatus.Yellow)
+                        .timeout(t -> t.time(Math.max(remainingMillis, 1L) + "ms")))
+                    .timedOut()) {
+                    return true;
+                }
+            } catch (ElasticsearchException | IOException e) {
+                // not ready to answer yet
+            }
+            try {
+                Thread.sleep(CLUSTER_RETRY_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lets Elasticsearch hold the request until the index exists and its primary shards are allocated.
+     *
+     * @return false if the index was not available in time
+     */
+    public static boolean awaitIndexAvailable(ElasticsearchClient client, String indexName, long timeout, TimeUnit unit) {
+        try {
+            return !client.cluster().health(h -> h
+                    .index(indexName)
+                    .waitForStatus(HealthStatus.Yellow)
+                    .timeout(t -> t.time(unit.toMillis(timeout) + "ms")))
+                .timedOut();
+        } catch (ElasticsearchException e) {
+            return false;
+        } catch (TransportException e) {
+            if (e.statusCode() == 408) {
+                // Elasticsearch answers 408 when the wait timed out, with a body that is not an error
+                return false;
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to get health of index [" + indexName + "]: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Consumes without acknowledging until the expected count of messages is delivered,
+     * closing the channel then gives all of them back to the queue.
+     * <p>
+     * Once the expected count is reached while the producer is still running, a short grace period lets messages still in flight arrive,
+     * so that a producer publishing too many messages is noticed. A producer already done cannot publish more, so there is no grace then.
+     *
+     * @param producerDone when true, the wait ends without waiting for the expected count
+     * @return the count of messages delivered when the wait ended, which may exceed the expected count
+     */
+    public static int awaitDeliveries(Connection connection, String queueName, int expectedCount, long timeout, TimeUnit unit, BooleanSupplier producerDone) throws IOException, TimeoutException {
+        AtomicInteger delivered = new AtomicInteger();
+        CountDownLatch expectedDeliveries = new CountDownLatch(expectedCount);
+        try (Channel channel = connection.createChannel()) {
+            channel.basicConsume(queueName, false, (consumerTag, message) -> {
+                delivered.incrementAndGet();
+                expectedDeliveries.countDown();
+            }, consumerTag -> {
+            });
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!expectedDeliveries.await(PRODUCER_CHECK_INTERVAL_MILLIS, MILLISECONDS) && System.nanoTime() < deadline) {
+                if (producerDone.getAsBoolean()) {
+                    break;
+                }
+            }
+            if (!producerDone.getAsBoolean()) {
+                Thread.sleep(IN_FLIGHT_GRACE_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return delivered.get();
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.GradePart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many gradings are in a given phase at once, however many students are graded concurrently,
+ * so that one student's build overlaps another's runtime checks without overloading the host or the shared brokers.
+ * <p>
+ * A part holds the tokens of its needs while it is graded, except for {@link Token#LAUNCH}, held from the first part
+ * launching the student's apps until the end of the grading, as launched apps outlive the part that started them.
+ * Gradings must not share the threads grading their parts, or one waiting for a token could starve the one holding it.
+ */
+public class ResourceTokens {
+
+    public enum Token {
+        /**
+         * Maven builds and static analyses, bound by the host's CPUs.
+         */
+        BUILD(Integer.parseInt(System.getProperty("MAX_CONCURRENT_BUILDS", String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)))), false),
+        /**
+         * Students' apps running against the shared RabbitMQ and Elasticsearch.
+         */
+        LAUNCH(Integer.parseInt(System.getProperty("MAX_CONCURRENT_LAUNCHES", "2")), true);
+
+        private final int permits;
+        private final boolean heldUntilGradingEnds;
+
+        Token(int permits, boolean heldUntilGradingEnds) {
+            this.permits = permits;
+            this.heldUntilGradingEnds = heldUntilGradingEnds;
+        }
+
+        public int permits() {
+            return permits;
+        }
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(ResourceTokens.class);
+    private final Map<Token, Semaphore> semaphores = new EnumMap<>(Token.class);
+    private final Map<Token, LongAdder> acquisitions = new EnumMap<>(Token.class);
+    private final Map<Token, LongAdder> waitNanos = new EnumMap<>(Token.class);
+
+    public ResourceTokens() {
+        for (Token token : Token.values()) {
+            semaphores.put(token, new Semaphore(token.permits, true));
+            acquisitions.put(token, new LongAdder());
+            waitNanos.put(token, new LongAdder());
+        }
+    }
+
+    /**
+     * @return the tokens of a single grading, to close once its launched apps are stopped
+     */
+    public Grading grading() {
+        return new Grading();
+    }
+
+    public void logStats() {
+        for (Token token : Token.values()) {
+            long count = acquisitions.get(token).sum();
+            logger.info(String.format("%s tokens (%d): %d acquired, %.1f sec waited in total", token, token.permits, count,
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.get(token).sum()) / 1000D));
+        }
+    }
+
+    private void acquire(Token token) {
+        long start = System.nanoTime();
+        try {
+            semaphores.get(token).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a " + token + " token", e);
+        }
+        acquisitions.get(token).increment();
+        waitNanos.get(token).add(System.nanoTime() - start);
+    }
+
+    private void release(Token token) {
+        semaphores.get(token).release();
+    }
+
+    int available(Token token) {
+        return semaphores.get(token).availablePermits();
+    }
+
+    public class Grading implements AutoCloseable {
+        private final Set<Token> heldUntilClose = EnumSet.noneOf(Token.class);
+
+        private Grading() {
+        }
+
+        public GradePart grade(PlannedPart plannedPart, Supplier<GradePart> grade) {
+            List<Token> heldForPart = new ArrayList<>();
+            try {
+                // always in the same order, not to deadlock with other gradings
+                for (Token token : plannedPart.needs().stream().map(PartNeed::token).filter(Objects::nonNull).sorted().distinct().toList()) {
+                    if (token.heldUntilGradingEnds) {
+                        holdUntilClose(token);
+                    } else {
+                        acquire(token);
+                        heldForPart.add(token);
+                    }
+                }
+                return grade.get();
+            } finally {
+                heldForPart.forEach(ResourceTokens.this::release);
+            }
+        }
+
+        private synchronized void holdUntilClose(Token token) {
+            if (!heldUntilClose.contains(token)) {
+                acquire(token);
+                heldUntilClose.add(token);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            heldUntilClose.forEach(ResourceTokens.this::release);
+            heldUntilClose.clear();
+        }
+    }
+}
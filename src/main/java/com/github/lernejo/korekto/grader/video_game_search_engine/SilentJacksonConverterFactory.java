@@ -1,5 +1,6 @@
 package com.github.lernejo.korekto.grader.video_game_search_engine;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
@@ -8,18 +9,36 @@ import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import retrofit2.Converter;
 import retrofit2.Retrofit;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
-
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses response bodies straight from their stream, reporting payloads that cannot be parsed to the
+ * {@link ExceptionHolder} opened by the calling thread instead of failing the call.
+ * <p>
+ * Holders are bound to threads, so calls enqueued with {@code Call#enqueue} are converted on OkHttp's dispatcher threads,
+ * where no holder is open: their problems are only logged.
+ */
 @SubjectForToolkitInclusion
 public class SilentJacksonConverterFactory extends Converter.Factory {
-    private final List<DeserializationProblem> latestDeserializationProblems = new ArrayList<>();
+    /**
+     * Only the beginning of an unparseable body is kept, to be shown in error messages.
+     */
+    static final int MAX_RECORDED_BODY_BYTES = 16 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(SilentJacksonConverterFactory.class);
+
+    private final ThreadLocal<ExceptionHolder> currentExceptionHolder = new ThreadLocal<>();
 
     private final ObjectMapper mapper;
 
@@ -55,12 +74,15 @@ public class SilentJacksonConverterFactory extends Converter.Factory {
         }
 
         public T convert(ResponseBody value) throws IOException {
-            String rawBody = value.string();
-            try (value) {
-                return this.adapter.readValue(rawBody);
-            } catch (IOException e) {
-                latestDeserializationProblems.add(new DeserializationProblem(rawBody, e));
-                return null;
+            Charset charset = value.contentType() != null ? value.contentType().charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
+            try (value; RecordingInputStream body = new RecordingInputStream(value.byteStream(), MAX_RECORDED_BODY_BYTES)) {
+                try {
+                    return this.adapter.readValue(body);
+                } catch (JsonProcessingException e) {
+                    body.recordRemaining();
+                    reportProblem(new DeserializationProblem(body.recorded(charset), e));
+                    return null;
+                }
             }
         }
     }
@@ -79,19 +101,105 @@ public class SilentJacksonConverterFactory extends Converter.Factory {
         }
     }
 
+    private void reportProblem(DeserializationProblem problem) {
+        ExceptionHolder exceptionHolder = currentExceptionHolder.get();
+        if (exceptionHolder != null) {
+            exceptionHolder.latestDeserializationProblem = problem;
+        } else {
+            logger.warn("Unparseable response body outside of any exception holder: " + problem.ex().getMessage());
+        }
+    }
+
+    /**
+     * Collects the problems of the calls executed synchronously by the current thread until closed.
+     */
     public ExceptionHolder newExceptionHolder() {
-        return new ExceptionHolder();
+        ExceptionHolder exceptionHolder = new ExceptionHolder(currentExceptionHolder.get());
+        currentExceptionHolder.set(exceptionHolder);
+        return exceptionHolder;
     }
 
     public class ExceptionHolder implements AutoCloseable {
 
+        private final ExceptionHolder enclosingHolder;
+        private volatile DeserializationProblem latestDeserializationProblem;
+
+        private ExceptionHolder(ExceptionHolder enclosingHolder) {
+            this.enclosingHolder = enclosingHolder;
+        }
+
         public DeserializationProblem getLatestDeserializationProblem() {
-            return latestDeserializationProblems.isEmpty() ? null : latestDeserializationProblems.get(latestDeserializationProblems.size() - 1);
+            return latestDeserializationProblem;
         }
 
         @Override
         public void close() {
-            latestDeserializationProblems.clear();
+            if (enclosingHolder == null) {
+                currentExceptionHolder.remove();
+            } else {
+                currentExceptionHolder.set(enclosingHolder);
+            }
+        }
+    }
+
+    /**
+     * Keeps a copy of the first bytes read through it.
+     */
+    private static final class RecordingInputStream extends FilterInputStream {
+        private final byte[] recorded;
+        private int recordedLength;
+        private boolean truncated;
+
+        private RecordingInputStream(InputStream in, int maxRecordedBytes) {
+            super(in);
+            this.recorded = new byte[maxRecordedBytes];
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                if (recordedLength < recorded.length) {
+                    recorded[recordedLength++] = (byte) b;
+                } else {
+                    truncated = true;
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                record(b, off, count);
+            }
+            return count;
+        }
+
+        private void record(byte[] b, int off, int len) {
+            int recordable = Math.min(len, recorded.length - recordedLength);
+            System.arraycopy(b, off, recorded, recordedLength, recordable);
+            recordedLength += recordable;
+            truncated |= recordable < len;
+        }
+
+        /**
+         * Parsing may stop early, reads what is left of the body up to the recording limit.
+         */
+        void recordRemaining() throws IOException {
+            byte[] buffer = new byte[4096];
+            while (recordedLength < recorded.length && read(buffer, 0, buffer.length) != -1) {
+                // recorded while read
+            }
+            if (recordedLength == recorded.length && super.read() != -1) {
+                truncated = true;
+            }
+        }
+
+        String recorded(Charset charset) {
+            String recordedBody = new String(recorded, 0, recordedLength, charset);
+            return truncated ? recordedBody + "\n[truncated after " + recorded.length + " bytes]" : recordedBody;
         }
     }
 
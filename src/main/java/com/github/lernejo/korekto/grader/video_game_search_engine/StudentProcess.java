@@ -0,0 +1,462 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A process running student code, whose output is watched so that a crash is noticed as soon as it happens
+ * rather than when a timeout expires.
+ * <p>
+ * The process is either started here, its output read from its standard output,
+ * or launched by someone else (such as the toolkit's Maven executor) writing its output to files, which are tailed.
+ */
+@SubjectForToolkitInclusion
+public class StudentProcess implements AutoCloseable {
+
+    private static final List<String> FAILURE_MARKERS = List.of("BUILD FAILURE", "APPLICATION FAILED TO START", "java.lang.OutOfMemoryError");
+    static final int KEPT_OUTPUT_LINES = 25;
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+    private static final long STOP_TIMEOUT_SECONDS = 10L;
+    private static final long USAGE_SAMPLE_INTERVAL_MILLIS = 1000L;
+    private static final ScheduledExecutorService USAGE_SAMPLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "student-process-usage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Logger logger = LoggerFactory.getLogger(StudentProcess.class);
+    private final String name;
+    private final Launch launch;
+    private final List<Path> outputFiles;
+    private final Deque<String> outputTail = new ArrayDeque<>();
+    private volatile boolean closed;
+    private volatile String failureMarker;
+    private volatile Consumer<Usage> usageListener;
+    private volatile Usage lastUsage = new Usage(OptionalLong.empty(), OptionalLong.empty());
+    private volatile ScheduledFuture<?> usageSampling;
+
+    private StudentProcess(String name, Launch launch, List<Path> outputFiles) {
+        this.name = name;
+        this.launch = launch;
+        this.outputFiles = outputFiles;
+    }
+
+    public static StudentProcess start(String name, Path directory, List<String> command) {
+        try {
+            Process process = new ProcessBuilder(command)
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .start();
+            StudentProcess studentProcess = new StudentProcess(name, new StartedProcess(process), List.of());
+            studentProcess.startOutputReader("output", () -> studentProcess.readOutput(process));
+            return studentProcess;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to start " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Watches a process launched by someone else, writing its output to the given files, deleted once closed.
+     *
+     * @param launcher          stops the process when closed
+     * @param commandLineMarker an argument of the launched process, telling it apart from other processes of the grader
+     */
+    public static StudentProcess watch(String name, AutoCloseable launcher, String commandLineMarker, List<Path> outputFiles) {
+        StudentProcess studentProcess = new StudentProcess(name, new LaunchedProcess(launcher, commandLineMarker), outputFiles);
+        for (Path outputFile : outputFiles) {
+            studentProcess.startOutputReader(outputFile.getFileName().toString(), () -> studentProcess.tail(outputFile));
+        }
+        return studentProcess;
+    }
+
+    private void startOutputReader(String source, Runnable reader) {
+        Thread outputReader = new Thread(reader, name + "-" + source);
+        outputReader.setDaemon(true);
+        outputReader.start();
+    }
+
+    private void readOutput(Process process) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                accept(line);
+            }
+        } catch (IOException e) {
+            // stream closed when the process is destroyed
+        }
+    }
+
+    /**
+     * Follows the given file until the process is closed, or exited and its output fully read.
+     */
+    private void tail(Path file) {
+        try {
+            while (!Files.exists(file)) {
+                if (closed || hasExited()) {
+                    return;
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                while (!closed) {
+                    String line = reader.readLine();
+                    if (line != null) {
+                        accept(line);
+                    } else if (hasExited()) {
+                        return;
+                    } else {
+                        Thread.sleep(POLL_INTERVAL_MILLIS);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // file deleted when the process is closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept(String line) {
+        logger.debug("[" + name + "] " + line);
+        synchronized (outputTail) {
+            if (outputTail.size() == KEPT_OUTPUT_LINES) {
+                outputTail.removeFirst();
+            }
+            outputTail.addLast(line);
+        }
+        if (failureMarker == null) {
+            FAILURE_MARKERS.stream().filter(line::contains).findFirst().ifPresent(m -> failureMarker = m);
+        }
+    }
+
+    /**
+     * Usage is sampled periodically from then on, as nothing can be read of a process once it exited.
+     *
+     * @param usageListener given what the application used, just before it is stopped
+     */
+    public StudentProcess onClose(Consumer<Usage> usageListener) {
+        this.usageListener = usageListener;
+        if (usageSampling == null) {
+            usageSampling = USAGE_SAMPLER.scheduleWithFixedDelay(this::sampleUsage, 0L, USAGE_SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * @return true once the process stopped, false while it runs or while a launched process is not found yet
+     */
+    public boolean hasExited() {
+        Optional<ProcessHandle> handle = launch.handle();
+        return handle.isPresent() && !handle.get().isAlive();
+    }
+
+    /**
+     * @return why the process is considered failed, with the end of its output, if it is
+     */
+    public Optional<String> failure() {
+        if (failureMarker != null) {
+            return Optional.of("**" + name + "** failed (" + failureMarker + "), end of output:\n```\n" + outputTail() + "\n```");
+        }
+        OptionalInt exitValue = launch.exitValue();
+        if (exitValue.isPresent() && exitValue.getAsInt() != 0) {
+            return Optional.of("**" + name + "** exited with code " + exitValue.getAsInt() + ", end of output:\n```\n" + outputTail() + "\n```");
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Waits for the given port to be listened to, giving up as soon as the process fails or stops.
+     *
+     * @return the reason why the port is not listened to, if so
+     */
+    public Optional<String> awaitPort(int port, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (System.nanoTime() < deadline) {
+            if (isListened(port)) {
+                return Optional.empty();
+            }
+            Optional<String> failure = failure();
+            if (failure.isPresent()) {
+                return failure;
+            }
+            if (hasExited()) {
+                return Optional.of("**" + name + "** stopped without listening on port " + port + ", end of output:\n```\n" + outputTail() + "\n```");
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return Optional.of("Server failed to start within " + unit.toSeconds(timeout) + " sec.");
+    }
+
+    /**
+     * @return the resident memory of the application, without the Maven JVM launching it if any,
+     * empty where it cannot be read from `/proc`
+     */
+    public OptionalLong residentSetSizeBytes() {
+        List<Long> residentSetSizes = launch.application()
+            .map(p -> residentSetSizeBytes(p.pid()))
+            .filter(OptionalLong::isPresent)
+            .map(OptionalLong::getAsLong)
+            .toList();
+        return residentSetSizes.isEmpty() ? OptionalLong.empty() : OptionalLong.of(residentSetSizes.stream().mapToLong(Long::longValue).sum());
+    }
+
+    /**
+     * Keeps what the application used so far, as nothing can be read of it once it exited.
+     */
+    private void sampleUsage() {
+        lastUsage = usage().orElse(lastUsage);
+    }
+
+    /**
+     * @return CPU time and peak resident memory of the application, without the Maven JVM launching it if any, as far as they can be read
+     */
+    public Usage usage() {
+        List<ProcessHandle> handles = launch.application().toList();
+        List<Long> cpuNanos = handles.stream()
+            .map(h -> h.info().totalCpuDuration())
+            .flatMap(Optional::stream)
+            .map(Duration::toNanos)
+            .toList();
+        List<Long> peakResidentSetSizes = handles.stream()
+            .map(h -> statusValueBytes(h.pid(), "VmHWM:"))
+            .filter(OptionalLong::isPresent)
+            .map(OptionalLong::getAsLong)
+            .toList();
+        return new Usage(
+            cpuNanos.isEmpty() ? OptionalLong.empty() : OptionalLong.of(cpuNanos.stream().mapToLong(Long::longValue).sum()),
+            peakResidentSetSizes.isEmpty() ? OptionalLong.empty() : OptionalLong.of(peakResidentSetSizes.stream().mapToLong(Long::longValue).sum()));
+    }
+
+    private static OptionalLong residentSetSizeBytes(long pid) {
+        return statusValueBytes(pid, "VmRSS:");
+    }
+
+    private static OptionalLong statusValueBytes(long pid, String field) {
+        try {
+            return Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status")).stream()
+                .filter(line -> line.startsWith(field))
+                .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")) * 1024L)
+                .findFirst();
+        } catch (IOException | RuntimeException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    private static boolean isListened(int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", port), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    String outputTail() {
+        synchronized (outputTail) {
+            return String.join("\n", outputTail);
+        }
+    }
+
+    /**
+     * @return the children of the process, such as the JVM forked by Maven
+     */
+    Stream<ProcessHandle> descendants() {
+        return launch.handle().stream().flatMap(ProcessHandle::descendants);
+    }
+
+    @Override
+    public void close() {
+        ScheduledFuture<?> sampling = usageSampling;
+        if (sampling != null) {
+            sampling.cancel(false);
+        }
+        Consumer<Usage> listener = usageListener;
+        if (listener != null) {
+            // an application which exited on its own is reported as last sampled
+            listener.accept(usage().orElse(lastUsage));
+        }
+        List<ProcessHandle> descendants = descendants().toList();
+        descendants.forEach(ProcessHandle::destroy);
+        launch.stop();
+        descendants.forEach(StudentProcess::awaitExit);
+        closed = true;
+        for (Path outputFile : outputFiles) {
+            try {
+                Files.deleteIfExists(outputFile);
+            } catch (IOException e) {
+                logger.warn("Unable to delete " + outputFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Waits for an already signaled process to stop, forcibly stopping it if it does not in time.
+     */
+    private static void awaitExit(ProcessHandle process) {
+        try {
+            process.onExit().get(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        } catch (ExecutionException | TimeoutException e) {
+            process.destroyForcibly();
+        }
+    }
+
+    private interface Launch {
+
+        /**
+         * @return empty as long as the process is not known
+         */
+        Optional<ProcessHandle> handle();
+
+        /**
+         * @return the processes running the student's application, the launcher excluded
+         */
+        Stream<ProcessHandle> application();
+
+        /**
+         * @return empty while the process runs or when its exit code is unknown
+         */
+        OptionalInt exitValue();
+
+        /**
+         * Stops the process gracefully, then forcibly if it does not stop in time.
+         */
+        void stop();
+    }
+
+    private record StartedProcess(Process process) implements Launch {
+
+        @Override
+        public Optional<ProcessHandle> handle() {
+            return Optional.of(process.toHandle());
+        }
+
+        @Override
+        public Stream<ProcessHandle> application() {
+            return Stream.concat(Stream.of(process.toHandle()), process.descendants());
+        }
+
+        @Override
+        public OptionalInt exitValue() {
+            return process.isAlive() ? OptionalInt.empty() : OptionalInt.of(process.exitValue());
+        }
+
+        @Override
+        public void stop() {
+            process.destroy();
+            try {
+                if (!process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static class LaunchedProcess implements Launch {
+        private final AutoCloseable launcher;
+        private final String commandLineMarker;
+        private volatile ProcessHandle handle;
+
+        private LaunchedProcess(AutoCloseable launcher, String commandLineMarker) {
+            this.launcher = launcher;
+            this.commandLineMarker = commandLineMarker;
+        }
+
+        /**
+         * The topmost of the grader's descendants having the marker in its arguments, as a launcher script may exec or fork.
+         */
+        @Override
+        public Optional<ProcessHandle> handle() {
+            if (handle == null) {
+                handle = ProcessHandle.current().descendants()
+                    .filter(this::isMarked)
+                    .filter(p -> p.parent().filter(this::isMarked).isEmpty())
+                    .findFirst()
+                    .orElse(null);
+            }
+            return Optional.ofNullable(handle);
+        }
+
+        /**
+         * The JVM forked by Maven and its own children, Maven itself being left out.
+         */
+        @Override
+        public Stream<ProcessHandle> application() {
+            return handle().stream().flatMap(ProcessHandle::descendants);
+        }
+
+        private boolean isMarked(ProcessHandle process) {
+            return process.info().arguments().map(arguments -> Arrays.asList(arguments).contains(commandLineMarker)).orElse(false);
+        }
+
+        @Override
+        public OptionalInt exitValue() {
+            return OptionalInt.empty();
+        }
+
+        @Override
+        public void stop() {
+            try {
+                launcher.close();
+            } catch (Exception e) {
+                LoggerFactory.getLogger(StudentProcess.class).warn("Unable to stop launched process: " + e.getMessage());
+            }
+            handle().filter(ProcessHandle::isAlive).ifPresent(process -> {
+                process.destroy();
+                awaitExit(process);
+            });
+        }
+    }
+
+    /**
+     * @param peakResidentSetSizeBytes summed over the processes of the application, so an upper bound of what they used at once
+     */
+    public record Usage(OptionalLong cpuNanos, OptionalLong peakResidentSetSizeBytes) {
+
+        /**
+         * @return this usage, completed with the given one where it could not be read
+         */
+        Usage orElse(Usage other) {
+            return new Usage(
+                cpuNanos.isPresent() ? cpuNanos : other.cpuNanos,
+                peakResidentSetSizeBytes.isPresent() ? peakResidentSetSizeBytes : other.peakResidentSetSizeBytes);
+        }
+    }
+}
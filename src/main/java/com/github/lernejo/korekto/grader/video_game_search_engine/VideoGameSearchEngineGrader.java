@@ -1,13 +1,15 @@
 package com.github.lernejo.korekto.grader.video_game_search_engine;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.github.lernejo.korekto.grader.video_game_search_engine.parts.AmqpToEsPartGrader;
 import com.github.lernejo.korekto.grader.video_game_search_engine.parts.FileToAmqpPartGrader;
+import com.github.lernejo.korekto.grader.video_game_search_engine.parts.IngestionThroughputPartGrader;
+import com.github.lernejo.korekto.grader.video_game_search_engine.parts.LargeFileInjectionPartGrader;
 import com.github.lernejo.korekto.grader.video_game_search_engine.parts.LuceneQueryPartGrader;
 import com.github.lernejo.korekto.grader.video_game_search_engine.parts.MavenCompileTestAndDownloadAdditionalPluginsPartGrader;
+import com.github.lernejo.korekto.grader.video_game_search_engine.parts.SearchLoadPartGrader;
 import com.github.lernejo.korekto.toolkit.GradePart;
 import com.github.lernejo.korekto.toolkit.Grader;
 import com.github.lernejo.korekto.toolkit.GradingConfiguration;
@@ -17,49 +19,59 @@ import com.github.lernejo.korekto.toolkit.partgrader.GitHistoryPartGrader;
 import com.github.lernejo.korekto.toolkit.partgrader.GitHubActionsPartGrader;
 import com.github.lernejo.korekto.toolkit.partgrader.JacocoCoveragePartGrader;
 import com.github.lernejo.korekto.toolkit.partgrader.PmdPartGrader;
-import com.github.lernejo.korekto.toolkit.thirdparty.docker.MappedPortsContainer;
 import com.github.lernejo.korekto.toolkit.thirdparty.pmd.Rule;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
-public class VideoGameSearchEngineGrader implements Grader<LaunchingContext> {
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.BROKERS;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.CPU;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.COMPILED_WORKSPACE;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.WEB_PORT;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
-    private final Logger logger = LoggerFactory.getLogger(VideoGameSearchEngineGrader.class);
+public class VideoGameSearchEngineGrader implements Grader<LaunchingContext> {
 
-    private final ObjectMapper om = new ObjectMapper()
-        .findAndRegisterModules()
-        .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
-        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final int MAX_GRADED_ANCESTRY = 200;
 
-    private final List<Game> games;
-    private final MappedPortsContainer rabbitMqContainer;
-    private final MappedPortsContainer elasticSearchContainer;
+    private final Logger logger = LoggerFactory.getLogger(VideoGameSearchEngineGrader.class);
 
-    public VideoGameSearchEngineGrader() throws IOException {
-        games = om.readValue(VideoGameSearchEngineGrader.class.getClassLoader().getResourceAsStream("games.json"), new TypeReference<List<Game>>() {
-        });
+    private final ObjectMapper om = newObjectMapper();
+
+    private final GameCatalog catalog;
+    private final Infrastructure infrastructure;
+    private final ClientPools clientPools;
+    private final GradeCache gradeCache = new GradeCache(om);
+    private final ResourceTokens resourceTokens = new ResourceTokens();
+    private final GradingMetrics metrics = new GradingMetrics();
+    private final Lock elasticsearchIndexLock = new ReentrantLock(true);
+
+    public VideoGameSearchEngineGrader() {
+        catalog = GameCatalog.load(om);
+        infrastructure = Infrastructure.create();
+        clientPools = new ClientPools(om, infrastructure.rabbitMqPort(), infrastructure.elasticSearchPort());
+        if (!Readiness.awaitClusterAvailable(clientPools.elasticsearchClient(), 60, SECONDS)) {
+            close();
+            throw new IllegalStateException("Elasticsearch cluster is not available");
+        }
+    }
 
-        rabbitMqContainer = new MappedPortsContainer(
-            "rabbitmq:3.9.13-management-alpine",
-            5672,
-            (sp, sps) -> "RabbitMQ up on " + sp + " (management on http://localhost:" + sps.get(0) + " )",
-            15672)
-            .startAndWaitForServiceToBeUp();
-        elasticSearchContainer = new MappedPortsContainer(
-            "elasticsearch:7.16.3",
-            9200)
-            .withEnv("discovery.type", "single-node")
-            .withEnv("xpack.security.enabled", "true")
-            .withEnv("ELASTIC_PASSWORD", "admin")
-            .withEnv("bootstrap.memory_lock", "true")
-            .withEnv("ES_JAVA_OPTS", "-Xms256m -Xmx512m")
-            .startAndWaitForServiceToBeUp();
+    public static ObjectMapper newObjectMapper() {
+        return new ObjectMapper()
+            .findAndRegisterModules()
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
     @Override
@@ -69,7 +81,10 @@ public class VideoGameSearchEngineGrader implements Grader<LaunchingContext> {
 
     @Override
     public void close() {
-        rabbitMqContainer.stop();
+        resourceTokens.logStats();
+        metrics.export(om);
+        clientPools.close();
+        infrastructure.close();
     }
 
     @Override
@@ -84,46 +99,122 @@ public class VideoGameSearchEngineGrader implements Grader<LaunchingContext> {
 
     @Override
     public LaunchingContext gradingContext(GradingConfiguration configuration) {
-        return new LaunchingContext(configuration, om, games, rabbitMqContainer.getServicePort(), elasticSearchContainer.getServicePort());
+        String virtualHost = "korekto-" + UUID.randomUUID();
+        infrastructure.createVirtualHost(virtualHost);
+        infrastructure.createVirtualHost(LaunchingContext.fileInjectorVirtualHost(virtualHost));
+        return new LaunchingContext(configuration, om, catalog, infrastructure.rabbitMqPort(), virtualHost, infrastructure.elasticSearchPort(), elasticsearchIndexLock, clientPools, metrics);
     }
 
     @Override
     public void run(LaunchingContext context) {
-        context.getGradeDetails().getParts().addAll(grade(context));
+        long startTime = System.nanoTime();
+        // launch tokens are given back once the student's apps are stopped
+        try (ResourceTokens.Grading tokens = resourceTokens.grading()) {
+            try {
+                context.getGradeDetails().getParts().addAll(grade(context, tokens));
+            } finally {
+                context.closeLaunchSessions();
+                clientPools.closeVirtualHost(context.rabbitMqVirtualHost);
+                clientPools.closeVirtualHost(context.fileInjectorVirtualHost);
+                infrastructure.deleteVirtualHost(context.rabbitMqVirtualHost);
+                infrastructure.deleteVirtualHost(context.fileInjectorVirtualHost);
+            }
+        } finally {
+            metrics.recordGrading(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Parts whose inputs did not change since the latest graded ancestor of the current commit are reused from its grading,
+     * others are graded.
+     * Each grading has its own scheduler, so that parts of concurrent gradings waiting for tokens never hold each other's threads.
+     */
+    private List<GradePart> grade(LaunchingContext context, ResourceTokens.Grading tokens) {
+        List<PlannedPart> plannedParts = plannedParts();
+        GitRepository repository = new GitRepository(context.getExercise().getRoot());
+        Optional<String> commit = GradeCache.ENABLED ? repository.headCommit() : Optional.empty();
+        Map<String, GradePart> reusable = commit
+            .filter(c -> !GradeCache.FORCE_REGRADE)
+            .map(c -> reusableParts(plannedParts, repository, c))
+            .orElse(Map.of());
+        List<GradePart> parts;
+        try (PartScheduler partScheduler = new PartScheduler()) {
+            parts = partScheduler.grade(plannedParts, p ->
+                reusable.containsKey(p.name()) && !(p.needsCompiledWorkspace() && context.hasCompilationFailed())
+                    ? reuse(reusable.get(p.name()))
+                    : tokens.grade(p, () -> applyPartGrader(context, p.grader())));
+        }
+        commit.ifPresent(c -> {
+            Set<String> reusableNames = plannedParts.stream().filter(p -> p.inputs().reusable()).map(PlannedPart::name).collect(Collectors.toSet());
+            gradeCache.put(c, parts.stream().filter(p -> reusableNames.contains(p.getId())).toList(), !context.hasCompilationFailed());
+        });
+        return parts;
+    }
+
+    private Map<String, GradePart> reusableParts(List<PlannedPart> plannedParts, GitRepository repository, String commit) {
+        Optional<GradeCache.Entry> previousGrading = gradeCache.latest(repository.ancestry(MAX_GRADED_ANCESTRY));
+        if (previousGrading.isEmpty()) {
+            return Map.of();
+        }
+        String previousCommit = previousGrading.get().commit();
+        Optional<ChangeSet> changes = previousCommit.equals(commit)
+            ? Optional.of(ChangeSet.NONE)
+            : repository.changedFiles(previousCommit, commit).map(paths -> new ChangeSet(true, paths));
+        if (changes.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, GradePart> reusable = PlannedPart.reusableParts(plannedParts, previousGrading.get(), changes.get());
+        logger.info("Reusing " + reusable.keySet() + " from grading of " + previousCommit + ", " + changes.get().paths().size() + " files changed since");
+        return reusable;
     }
 
-    private Collection<? extends GradePart> grade(LaunchingContext context) {
-        return graders().stream()
-            .map(g -> applyPartGrader(context, g))
-            .collect(Collectors.toList());
+    private GradePart reuse(GradePart part) {
+        metrics.recordPart(part.getId(), GradingMetrics.Outcome.REUSED, 0L);
+        return part;
     }
 
     private GradePart applyPartGrader(LaunchingContext context, PartGrader<LaunchingContext> g) {
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
+        GradingMetrics.Outcome outcome = GradingMetrics.Outcome.FAILED;
         try {
-            return g.grade(context);
+            GradePart part = g.grade(context);
+            outcome = GradingMetrics.Outcome.GRADED;
+            return part;
         } finally {
-            logger.debug(g.name() + " in " + HumanReadableDuration.toString(System.currentTimeMillis() - startTime));
+            long elapsedNanos = System.nanoTime() - startTime;
+            metrics.recordPart(g.name(), outcome, elapsedNanos);
+            logger.debug(g.name() + " in " + HumanReadableDuration.toString(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
         }
     }
 
-    private Collection<? extends PartGrader<LaunchingContext>> graders() {
-        return List.of(
-            new MavenCompileTestAndDownloadAdditionalPluginsPartGrader(
+    private List<PlannedPart> plannedParts() {
+        List<PlannedPart> plannedParts = new ArrayList<>(List.of(
+            new PlannedPart(new MavenCompileTestAndDownloadAdditionalPluginsPartGrader(
                 "Part 1 - Compilation & Tests",
-                4.0D),
-            new GitHubActionsPartGrader<>("Part 2 - CI", 2.0D),
-            new JacocoCoveragePartGrader<>("Part 3 - Code Coverage", 4.0D, 0.9D),
-            new AmqpToEsPartGrader("Part 4 - AMQP -> ES", 4.0D),
-            new FileToAmqpPartGrader("Part 5 - File -> AMQP", 4.0D),
-            new LuceneQueryPartGrader("Part 6 - Lucene querying", 4.0D),
-
-            new GitHistoryPartGrader<>("Git (proper descriptive messages)", -4.0D),
-            new PmdPartGrader<>("Coding style", -4.0D, 1.0,
+                4.0D), PartInputs.build(), CPU),
+            new PlannedPart(new GitHubActionsPartGrader<>("Part 2 - CI", 2.0D), PartInputs.remote()),
+            new PlannedPart(new JacocoCoveragePartGrader<>("Part 3 - Code Coverage", 4.0D, 0.9D), PartInputs.buildOutput(), COMPILED_WORKSPACE),
+            new PlannedPart(new AmqpToEsPartGrader("Part 4 - AMQP -> ES", 4.0D), PartInputs.module(LaunchingContext.SEARCH_API_MODULE), COMPILED_WORKSPACE, BROKERS, WEB_PORT),
+            new PlannedPart(new FileToAmqpPartGrader("Part 5 - File -> AMQP", 4.0D), PartInputs.module(LaunchingContext.FILE_INJECTOR_MODULE), COMPILED_WORKSPACE, BROKERS),
+            new PlannedPart(new LuceneQueryPartGrader("Part 6 - Lucene querying", 4.0D), PartInputs.module(LaunchingContext.SEARCH_API_MODULE), COMPILED_WORKSPACE, BROKERS, WEB_PORT)
+        ));
+        if (SearchLoadPartGrader.ENABLED) {
+            plannedParts.add(new PlannedPart(new SearchLoadPartGrader("Part 7 - Search under load", 2.0D), PartInputs.module(LaunchingContext.SEARCH_API_MODULE), COMPILED_WORKSPACE, BROKERS, WEB_PORT));
+        }
+        if (IngestionThroughputPartGrader.ENABLED) {
+            plannedParts.add(new PlannedPart(new IngestionThroughputPartGrader("Part 8 - Ingestion throughput", 2.0D), PartInputs.module(LaunchingContext.SEARCH_API_MODULE), COMPILED_WORKSPACE, BROKERS, WEB_PORT));
+        }
+        if (LargeFileInjectionPartGrader.ENABLED) {
+            plannedParts.add(new PlannedPart(new LargeFileInjectionPartGrader("Part 9 - Large file injection", 2.0D), PartInputs.module(LaunchingContext.FILE_INJECTOR_MODULE), COMPILED_WORKSPACE, BROKERS));
+        }
+        plannedParts.addAll(List.of(
+            new PlannedPart(new GitHistoryPartGrader<>("Git (proper descriptive messages)", -4.0D), PartInputs.history()),
+            new PlannedPart(new PmdPartGrader<>("Coding style", -4.0D, 1.0,
                 Rule.buildExcessiveClassLengthRule(50),
                 Rule.buildExcessiveMethodLengthRule(15),
                 Rule.buildFieldMandatoryModifierRule(1, "private", "final", "!static")
-            )
-        );
+            ), PartInputs.javaSources(), CPU)
+        ));
+        return plannedParts;
     }
 }
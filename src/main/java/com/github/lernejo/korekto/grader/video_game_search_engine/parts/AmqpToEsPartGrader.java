@@ -1,22 +1,20 @@
 package com.github.lernejo.korekto.grader.video_game_search_engine.parts;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch.core.search.Hit;
-import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
-import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import com.github.lernejo.korekto.grader.video_game_search_engine.ClientPools;
 import com.github.lernejo.korekto.grader.video_game_search_engine.Game;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GradingMetrics.Phase;
+import com.github.lernejo.korekto.grader.video_game_search_engine.IndexResetter;
+import com.github.lernejo.korekto.grader.video_game_search_engine.IndexVerifier;
 import com.github.lernejo.korekto.grader.video_game_search_engine.LaunchingContext;
+import com.github.lernejo.korekto.grader.video_game_search_engine.Readiness;
 import com.github.lernejo.korekto.toolkit.GradePart;
 import com.github.lernejo.korekto.toolkit.PartGrader;
-import com.github.lernejo.korekto.toolkit.misc.Ports;
 import com.github.lernejo.korekto.toolkit.misc.SubjectForToolkitInclusion;
 import com.github.lernejo.korekto.toolkit.thirdparty.amqp.AmqpCapable;
-import com.github.lernejo.korekto.toolkit.thirdparty.maven.MavenExecutionHandle;
-import com.github.lernejo.korekto.toolkit.thirdparty.maven.MavenExecutor;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
 import org.testcontainers.shaded.org.awaitility.core.ConditionTimeoutException;
 
 import java.io.IOException;
@@ -24,14 +22,11 @@ import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
-import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.MavenCompileTestAndDownloadAdditionalPluginsPartGrader.SPRING_BOOT_PLUGIN;
 import static java.util.concurrent.TimeUnit.SECONDS;
-import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
 
 public record AmqpToEsPartGrader(String name, Double maxGrade) implements PartGrader<LaunchingContext>, AmqpCapable {
 
@@ -44,103 +39,128 @@ public record AmqpToEsPartGrader(String name, Double maxGrade) implements PartGr
             return result(List.of("Not trying to start server as compilation failed"), 0.0D);
         }
 
-        List<Game> games = context.selectGames(4);
+        List<Game> games = context.selectGames(name(), 4);
 
-        ConnectionFactory factory = context.newConnectionFactory();
-        deleteQueue(factory, QUEUE_NAME);
-        ElasticsearchClient elasticsearchClient = context.newElasticsearchClient();
-        deleteIndex(elasticsearchClient, INDEX_NAME);
+        try (ClientPools.ChannelLease lease = context.leaseChannel(context.rabbitMqVirtualHost)) {
+            deleteQueue(lease.channel(), QUEUE_NAME);
+        }
 
-        String moduleSpec = "-pl :search-api ";
-        String springArguments = "-Dserver.port=" + context.webPort + " -Dspring.rabbitmq.port=" + context.rabbitMqPort + " -Delasticsearch.port=" + context.elasticSearchPort;
+        context.elasticsearchIndexLock.lock();
+        try {
+            return gradeHoldingIndex(context, games);
+        } finally {
+            context.elasticsearchIndexLock.unlock();
+        }
+    }
 
-        try
-            (MavenExecutionHandle ignored = MavenExecutor.executeGoalAsync(context.getExercise(), context.getConfiguration().getWorkspace(),
-                SPRING_BOOT_PLUGIN + ":run " + moduleSpec + " -Dspring-boot.run.jvmArguments='" + springArguments + "'")) {
-            try {
-                Ports.waitForPortToBeListenedTo(context.webPort, SECONDS, context.serverStartTimeout);
-            } catch (CancellationException e) {
-                return result(List.of("Server failed to start within " + context.serverStartTimeout + " sec."), 0.0D);
-            }
+    /**
+     * The index is deleted before the first start of the search-api, to check that it is created on boot,
+     * so the lock is held from there to the verification of its content, startup included.
+     */
+    private GradePart gradeHoldingIndex(LaunchingContext context, List<Game> games) {
+        ElasticsearchClient elasticsearchClient = context.elasticsearchClient();
+        new IndexResetter(elasticsearchClient).delete(INDEX_NAME);
+
+        Optional<String> startFailure = context.searchApi().ensureStarted(name());
+        if (startFailure.isPresent()) {
+            return result(List.of(startFailure.get()), 0.0D);
+        }
 
-            double grade = maxGrade();
-            List<String> errors = new ArrayList<>();
+        double grade = maxGrade();
+        List<String> errors = new ArrayList<>();
 
-            try (Connection connection = factory.newConnection();
-                 Channel channel = connection.createChannel()) {
+        Connection connection = context.amqpConnection(context.rabbitMqVirtualHost);
+        try {
+            Readiness.await().atMost(5, SECONDS).until(() -> doesQueueExists(connection, QUEUE_NAME));
+        } catch (ConditionTimeoutException e) {
+            context.setRabbitQueueNotCreated();
+            grade -= maxGrade() / 2;
+            errors.add("No queue named `" + QUEUE_NAME + "` was created by the server when starting");
+        }
+        createQueue(connection, QUEUE_NAME);
 
-                try {
-                    await().atMost(5, SECONDS).until(() -> doesQueueExists(connection, QUEUE_NAME));
-                } catch (ConditionTimeoutException e) {
-                    context.setRabbitQueueNotCreated();
-                    grade -= maxGrade() / 2;
-                    errors.add("No queue named `" + QUEUE_NAME + "` was created by the server when starting");
-                }
-                createQueue(connection, QUEUE_NAME);
+        try (ClientPools.ChannelLease lease = context.leaseChannel(context.rabbitMqVirtualHost)) {
+            Channel channel = lease.channel();
 
-                AMQP.BasicProperties basicProperties = new AMQP.BasicProperties().builder().contentType("application/json").deliveryMode(2).build();
+            AMQP.BasicProperties basicProperties = new AMQP.BasicProperties().builder().contentType("application/json").deliveryMode(2).build();
+            try (var ignored = context.metrics.time(name(), Phase.PUBLISH)) {
                 for (Game game : games) {
-                    channel.basicPublish("", QUEUE_NAME, true, false, basicProperties.builder().headers(Map.of("game_id", game.id())).build(), context.om.writeValueAsBytes(game));
+                    channel.basicPublish("", QUEUE_NAME, true, false, basicProperties.builder().headers(Map.of("game_id", game.id())).build(), context.catalog.payload(game));
                 }
-
-                try {
-                    await().atMost(10, SECONDS).until(() -> channel.messageCount(QUEUE_NAME) == 0L);
-                } catch (ConditionTimeoutException e) {
-                    grade -= maxGrade() / 2;
-                    errors.add("Messages published to `" + QUEUE_NAME + "` were not consumed within 10 sec");
-                }
-            } catch (IOException | TimeoutException e) {
-                throw new IllegalStateException("Could not connect to the dockerized RabbitMQ", e);
             }
 
-            try {
-                await().atMost(10, SECONDS).until(() -> elasticsearchClient.indices().exists(new ExistsRequest.Builder().index(INDEX_NAME).build()).value());
-
-                try {
-                    List<Game> indexedGames = await().atMost(5, SECONDS).until(() -> searchAll(elasticsearchClient, INDEX_NAME, Game.class), gs -> gs.size() == 4);
+            try (var ignored = context.metrics.time(name(), Phase.QUEUE_DRAIN)) {
+                Readiness.await().atMost(10, SECONDS).until(() -> channel.messageCount(QUEUE_NAME) == 0L);
+            } catch (ConditionTimeoutException e) {
+                grade -= maxGrade() / 2;
+                errors.add("Messages published to `" + QUEUE_NAME + "` were not consumed within 10 sec");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not connect to the dockerized RabbitMQ", e);
+        }
 
-                    Set<String> indexedTitles = indexedGames.stream().map(Game::title).collect(Collectors.toSet());
-                    Set<String> expectedTitles = games.stream().map(Game::title).collect(Collectors.toSet());
-                    if (!expectedTitles.equals(indexedTitles)) {
-                        grade -= maxGrade() / 3;
-                        errors.add("Index `" + INDEX_NAME + "` contains these games: " + indexedTitles + " whereas those were expected: " + expectedTitles);
-                    }
-                } catch (ConditionTimeoutException e) {
+        boolean indexAvailable;
+        try (var ignored = context.metrics.time(name(), Phase.INDEX_WAIT)) {
+            indexAvailable = Readiness.awaitIndexAvailable(elasticsearchClient, INDEX_NAME, 10, SECONDS);
+        }
+        if (indexAvailable) {
+            refresh(elasticsearchClient, INDEX_NAME);
+            IndexVerifier verifier = new IndexVerifier(elasticsearchClient);
+            Set<String> expectedTitles = games.stream().map(Game::title).collect(Collectors.toSet());
+            try (var ignored = context.metrics.time(name(), Phase.INDEX_WAIT)) {
+                IndexVerifier.Verification verification = Readiness.await().atMost(5, SECONDS).until(() -> verifier.verify(INDEX_NAME, Game.class, Game::title, expectedTitles), v -> v.documents() >= 4);
+
+                if (!verification.matches()) {
                     grade -= maxGrade() / 3;
-                    errors.add("Index `" + INDEX_NAME + "` does not contains the 4 games sent of the " + QUEUE_NAME + " queue.");
+                    errors.add(mismatch(verification));
                 }
             } catch (ConditionTimeoutException e) {
-                context.setElasticsearchIndexNotCreated();
-                grade -= maxGrade() / 2;
-                errors.add("No index `" + INDEX_NAME + "` were created after message consumption");
+                grade -= maxGrade() / 3;
+                errors.add("Index `" + INDEX_NAME + "` does not contains the 4 games sent of the " + QUEUE_NAME + " queue.");
             }
+        } else {
+            context.setElasticsearchIndexNotCreated();
+            grade -= maxGrade() / 2;
+            errors.add("No index `" + INDEX_NAME + "` were created after message consumption");
+        }
 
-            return result(errors, grade);
-        } finally {
-            Ports.waitForPortToBeFreed(context.webPort, SECONDS, 5L);
+        return result(errors, grade);
+    }
+
+    /**
+     * Names only what is wrong, as any of missing, duplicated or unexpected games may be the only problem.
+     */
+    static String mismatch(IndexVerifier.Verification verification) {
+        List<String> problems = new ArrayList<>();
+        if (verification.missing() > 0) {
+            problems.add("missing games: " + verification.missing() + " of " + verification.expected() + ", such as " + verification.missingExamples());
+        }
+        if (verification.duplicated() > 0) {
+            problems.add("games indexed more than once: " + verification.duplicated());
         }
+        if (verification.unexpected() > 0) {
+            problems.add("games not sent: " + verification.unexpected() + ", such as " + verification.unexpectedExamples());
+        }
+        return "Index `" + INDEX_NAME + "` does not contain exactly the games sent to the " + QUEUE_NAME + " queue (" + String.join("; ", problems) + ")";
     }
 
-    @SubjectForToolkitInclusion
-    private <T> List<T> searchAll(ElasticsearchClient client, String indexName, Class<T> targetItemClass) {
+    /**
+     * Makes documents indexed by the student's app searchable now rather than at the next periodic refresh.
+     */
+    private void refresh(ElasticsearchClient client, String indexName) {
         try {
-            return client.search(
-                    s -> s.index(indexName),
-                    targetItemClass)
-                .hits().hits().stream().map(Hit::source).toList();
+            client.indices().refresh(r -> r.index(indexName));
         } catch (IOException e) {
-            throw new UncheckedIOException("Unable to search index: " + e.getMessage(), e);
+            throw new UncheckedIOException("Unable to refresh index: " + e.getMessage(), e);
         }
     }
 
     @SubjectForToolkitInclusion
-    static void deleteIndex(ElasticsearchClient client, String indexName) {
+    static void deleteQueue(Channel channel, String queueName) {
         try {
-            if (client.indices().exists(new ExistsRequest.Builder().index(indexName).build()).value()) {
-                client.indices().delete(new DeleteIndexRequest.Builder().index(indexName).build());
-            }
+            channel.queueDelete(queueName);
         } catch (IOException e) {
-            throw new UncheckedIOException("Unable to delete index: " + e.getMessage(), e);
+            throw new UncheckedIOException("Unable to delete queue: " + e.getMessage(), e);
         }
     }
 }
@@ -1,32 +1,34 @@
 package com.github.lernejo.korekto.grader.video_game_search_engine.parts;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.lernejo.korekto.grader.video_game_search_engine.ClientPools;
 import com.github.lernejo.korekto.grader.video_game_search_engine.Game;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GameCatalog;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GradingMetrics.Phase;
 import com.github.lernejo.korekto.grader.video_game_search_engine.LaunchingContext;
+import com.github.lernejo.korekto.grader.video_game_search_engine.Readiness;
+import com.github.lernejo.korekto.grader.video_game_search_engine.StudentProcess;
 import com.github.lernejo.korekto.toolkit.GradePart;
 import com.github.lernejo.korekto.toolkit.PartGrader;
 import com.github.lernejo.korekto.toolkit.thirdparty.amqp.AmqpCapable;
-import com.github.lernejo.korekto.toolkit.thirdparty.maven.MavenExecutionHandle;
-import com.github.lernejo.korekto.toolkit.thirdparty.maven.MavenExecutor;
-import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.testcontainers.shaded.org.awaitility.core.ConditionTimeoutException;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.TimeoutException;
 
 import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.AmqpToEsPartGrader.QUEUE_NAME;
-import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.MavenCompileTestAndDownloadAdditionalPluginsPartGrader.SPRING_BOOT_PLUGIN;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.AmqpToEsPartGrader.deleteQueue;
 import static java.util.concurrent.TimeUnit.SECONDS;
-import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
 
 public record FileToAmqpPartGrader(String name, Double maxGrade) implements PartGrader<LaunchingContext>, AmqpCapable {
 
@@ -41,46 +43,49 @@ public record FileToAmqpPartGrader(String name, Double maxGrade) implements Part
         double grade = maxGrade();
         List<String> errors = new ArrayList<>();
 
-        int gamesToSerializeCount = context.randomSource().nextInt(10);
-        List<Game> games = context.selectGames(gamesToSerializeCount);
-        Path gamesFilePath = createNewJsonGamesFile(context.om, games);
+        Random random = context.newRandom(name());
+        int gamesToSerializeCount = random.nextInt(10);
+        List<Game> games = context.selectGames(random, gamesToSerializeCount);
+        Path gamesFilePath = createNewJsonGamesFile(context.catalog, games);
 
-        ConnectionFactory factory = context.newConnectionFactory();
-        recreateQueue(factory, QUEUE_NAME);
+        Connection connection = context.amqpConnection(context.fileInjectorVirtualHost);
+        try (ClientPools.ChannelLease lease = context.leaseChannel(context.fileInjectorVirtualHost)) {
+            deleteQueue(lease.channel(), QUEUE_NAME);
+        }
+        createQueue(connection, QUEUE_NAME);
 
-        String moduleSpec = "-pl :file-injector ";
         String mainArguments = gamesFilePath.toString();
-        String springArguments = "-Dspring.rabbitmq.port=" + context.rabbitMqPort;
-
-        try
-            (MavenExecutionHandle ignored = MavenExecutor.executeGoalAsync(context.getExercise(), context.getConfiguration().getWorkspace(),
-                SPRING_BOOT_PLUGIN + ":run " + moduleSpec + " -Dspring-boot.run.arguments='" + mainArguments + "'" + " -Dspring-boot.run.jvmArguments='" + springArguments + "'")) {
-
-            try (Connection connection = factory.newConnection();
-                 Channel channel = connection.createChannel()) {
+        String springArguments = context.infrastructureArguments(context.fileInjectorVirtualHost);
 
-                try {
-                    await().atMost(context.injectorStartTimeout, SECONDS).until(() -> channel.messageCount(QUEUE_NAME) == gamesToSerializeCount);
-                } catch (ConditionTimeoutException e) {
-                    grade -= maxGrade() / 2;
-                    errors.add("Messages in given file where not published to `" + QUEUE_NAME + "` within " + context.injectorStartTimeout + " sec");
-                }
-            } catch (ConditionTimeoutException e) {
+        try (StudentProcess injector = context.startSpringBootModule(LaunchingContext.FILE_INJECTOR_MODULE, springArguments, mainArguments)) {
+            int deliveredCount;
+            try (var ignored = context.metrics.time(name(), Phase.PUBLISH)) {
+                deliveredCount = Readiness.awaitDeliveries(connection, QUEUE_NAME, gamesToSerializeCount, context.injectorStartTimeout, SECONDS, injector::hasExited);
+            }
+            Optional<String> injectorFailure = injector.failure();
+            if (injectorFailure.isPresent()) {
                 grade = 0;
-                errors.add("No queue named `" + QUEUE_NAME + "` was created by the server when starting");
-                return result(errors, grade);
-            } catch (IOException | TimeoutException e) {
-                throw new IllegalStateException("Could not connect to the dockerized RabbitMQ", e);
+                errors.add(injectorFailure.get());
+            } else if (deliveredCount < gamesToSerializeCount) {
+                grade -= maxGrade() / 2;
+                errors.add("Messages in given file where not published to `" + QUEUE_NAME + "` within " + context.injectorStartTimeout + " sec");
+            } else if (deliveredCount > gamesToSerializeCount) {
+                grade -= maxGrade() / 2;
+                errors.add(deliveredCount + " messages were published to `" + QUEUE_NAME + "` whereas the given file contains " + gamesToSerializeCount + " games");
             }
+        } catch (IOException | TimeoutException e) {
+            throw new IllegalStateException("Could not connect to the dockerized RabbitMQ", e);
         }
 
         return result(errors, grade);
     }
 
-    private Path createNewJsonGamesFile(ObjectMapper om, List<Game> games) {
+    private Path createNewJsonGamesFile(GameCatalog catalog, List<Game> games) {
         try {
             Path path = Files.createTempFile("korekto", "games.json").toAbsolutePath();
-            Files.write(path, om.writeValueAsBytes(games));
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path))) {
+                catalog.writeJsonArray(games, outputStream);
+            }
             logger.info("Injecting JSON games from file: " + path);
             return path;
         } catch (IOException e) {
@@ -0,0 +1,177 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine.parts;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.github.lernejo.korekto.grader.video_game_search_engine.ClientPools;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GradingMetrics.Phase;
+import com.github.lernejo.korekto.grader.video_game_search_engine.IndexResetter;
+import com.github.lernejo.korekto.grader.video_game_search_engine.LaunchingContext;
+import com.github.lernejo.korekto.toolkit.GradePart;
+import com.github.lernejo.korekto.toolkit.PartGrader;
+import com.github.lernejo.korekto.toolkit.thirdparty.amqp.AmqpCapable;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.AmqpToEsPartGrader.INDEX_NAME;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.AmqpToEsPartGrader.QUEUE_NAME;
+
+/**
+ * Publishes thousands of games to the queue consumed by the search-api, and measures how long it takes
+ * for all of them to be searchable, along with the depth of the queue over time.
+ */
+public record IngestionThroughputPartGrader(String name, Double maxGrade) implements PartGrader<LaunchingContext>, AmqpCapable {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("THROUGHPUT_TEST", "false"));
+    private static final int MESSAGES = Integer.parseInt(System.getProperty("THROUGHPUT_MESSAGES", "5000"));
+    private static final double MIN_RATE = Double.parseDouble(System.getProperty("THROUGHPUT_MIN_RATE", "200"));
+    private static final long TIMEOUT_MILLIS = Long.parseLong(System.getProperty("THROUGHPUT_TIMEOUT", "120")) * 1000L;
+    private static final int CONFIRM_BATCH_SIZE = 500;
+    private static final long SAMPLE_INTERVAL_MILLIS = 500L;
+    private static final int MAX_REPORTED_SAMPLES = 20;
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionThroughputPartGrader.class);
+
+    @Override
+    public GradePart grade(LaunchingContext context) {
+        if (context.hasCompilationFailed()) {
+            return result(List.of("Not trying to start server as compilation failed"), 0.0D);
+        }
+
+        Optional<String> startFailure = context.searchApi().ensureStarted(name());
+        if (startFailure.isPresent()) {
+            return result(List.of(startFailure.get()), 0.0D);
+        }
+
+        context.elasticsearchIndexLock.lock();
+        try {
+            return gradeHoldingIndex(context);
+        } finally {
+            context.elasticsearchIndexLock.unlock();
+        }
+    }
+
+    /**
+     * From the reset of the index to the last count of its documents, the index must not be touched by other gradings.
+     */
+    private GradePart gradeHoldingIndex(LaunchingContext context) {
+        ElasticsearchClient elasticsearchClient = context.elasticsearchClient();
+        new IndexResetter(elasticsearchClient).reset(INDEX_NAME);
+
+        Connection connection = context.amqpConnection(context.rabbitMqVirtualHost);
+        createQueue(connection, QUEUE_NAME);
+        List<Long> queueDepths = new CopyOnWriteArrayList<>();
+        ScheduledExecutorService depthSampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "queue-depth-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.currentTimeMillis();
+        long deadline = start + TIMEOUT_MILLIS;
+        long indexed;
+        try {
+            // sampled from the start, as the search-api consumes while games are still being published
+            depthSampler.scheduleAtFixedRate(() -> sampleQueueDepth(context, queueDepths), 0L, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            try (var ignored = context.metrics.time(name(), Phase.PUBLISH)) {
+                publish(context, connection);
+            }
+            long publishedAt = System.currentTimeMillis();
+            // the queue is empty as soon as the last messages are delivered, even unacknowledged, so documents are counted instead
+            try (var ignored = context.metrics.time(name(), Phase.INDEX_WAIT)) {
+                indexed = countIndexed(elasticsearchClient);
+                while (indexed < MESSAGES && sleepUntilNextSample(deadline)) {
+                    indexed = countIndexed(elasticsearchClient);
+                }
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            return grade(context, indexed, elapsed, publishedAt - start, List.copyOf(queueDepths));
+        } catch (IOException | TimeoutException e) {
+            throw new IllegalStateException("Could not connect to the dockerized RabbitMQ", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result(List.of("Interrupted while measuring ingestion throughput"), 0.0D);
+        } finally {
+            depthSampler.shutdownNow();
+        }
+    }
+
+    /**
+     * Counts ready messages only, those delivered to the search-api but not acknowledged yet being left out.
+     */
+    private static void sampleQueueDepth(LaunchingContext context, List<Long> queueDepths) {
+        try (ClientPools.ChannelLease lease = context.leaseChannel(context.rabbitMqVirtualHost)) {
+            queueDepths.add(lease.channel().messageCount(QUEUE_NAME));
+        } catch (IOException | RuntimeException e) {
+            // a missed sample only makes the report coarser
+        }
+    }
+
+    /**
+     * Waits for the broker to confirm every batch, so that the measure starts with all messages actually queued.
+     */
+    private void publish(LaunchingContext context, Connection connection) throws IOException, TimeoutException, InterruptedException {
+        try (Channel channel = connection.createChannel()) {
+            context.newGameGenerator(name()).publish(MESSAGES, context.catalog, channel, QUEUE_NAME, CONFIRM_BATCH_SIZE, TIMEOUT_MILLIS);
+        }
+    }
+
+    private long countIndexed(ElasticsearchClient client) throws IOException {
+        client.indices().refresh(r -> r.index(INDEX_NAME));
+        return client.count(c -> c.index(INDEX_NAME)).count();
+    }
+
+    private static boolean sleepUntilNextSample(long deadline) throws InterruptedException {
+        if (System.currentTimeMillis() + SAMPLE_INTERVAL_MILLIS > deadline) {
+            return false;
+        }
+        Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+        return true;
+    }
+
+    private GradePart grade(LaunchingContext context, long indexed, long elapsedMillis, long publishMillis, List<Long> queueDepths) {
+        double rate = indexed * 1000D / Math.max(elapsedMillis, 1L);
+        String report = String.format("%d of %d games searchable after %.1f sec (%.0f msg/s, publishing took %.1f sec), ready messages in queue every %.1f sec: %s",
+            indexed, MESSAGES, elapsedMillis / 1000D, rate, publishMillis / 1000D,
+            SAMPLE_INTERVAL_MILLIS * stride(queueDepths) / 1000D, downsample(queueDepths));
+        logger.info("[" + context.rabbitMqVirtualHost + "] " + report);
+
+        double grade = maxGrade();
+        List<String> errors = new ArrayList<>();
+        if (indexed < MESSAGES) {
+            grade -= maxGrade() / 2;
+            errors.add("Only " + indexed + " of the " + MESSAGES + " games published to `" + QUEUE_NAME + "` were indexed within " + TIMEOUT_MILLIS / 1000 + " sec");
+        }
+        if (rate < MIN_RATE) {
+            grade -= maxGrade() / 2;
+            errors.add(String.format("Ingestion rate is %.0f msg/s, below %.0f msg/s", rate, MIN_RATE));
+        }
+        if (!errors.isEmpty()) {
+            errors.add(0, report);
+        }
+        return result(errors, grade);
+    }
+
+    private static int stride(List<Long> samples) {
+        return Math.max(1, (samples.size() + MAX_REPORTED_SAMPLES - 1) / MAX_REPORTED_SAMPLES);
+    }
+
+    private static String downsample(List<Long> samples) {
+        int stride = stride(samples);
+        return IntStream.range(0, samples.size())
+            .filter(i -> i % stride == 0)
+            .mapToObj(i -> String.valueOf(samples.get(i)))
+            .collect(Collectors.joining(", ", "[", "]"));
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine.parts;
+
+import com.github.lernejo.korekto.grader.video_game_search_engine.ClientPools;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GradingMetrics.Phase;
+import com.github.lernejo.korekto.grader.video_game_search_engine.LaunchingContext;
+import com.github.lernejo.korekto.grader.video_game_search_engine.StudentProcess;
+import com.github.lernejo.korekto.toolkit.GradePart;
+import com.github.lernejo.korekto.toolkit.PartGrader;
+import com.github.lernejo.korekto.toolkit.thirdparty.amqp.AmqpCapable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.AmqpToEsPartGrader.QUEUE_NAME;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.AmqpToEsPartGrader.deleteQueue;
+
+/**
+ * Gives the file-injector a file too large to be loaded at once within a small heap,
+ * so that only an injector streaming its input publishes all of it.
+ */
+public record LargeFileInjectionPartGrader(String name, Double maxGrade) implements PartGrader<LaunchingContext>, AmqpCapable {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("LARGE_FILE_TEST", "false"));
+    private static final int GAMES = Integer.parseInt(System.getProperty("LARGE_FILE_GAMES", "200000"));
+    private static final String MAX_HEAP = System.getProperty("LARGE_FILE_XMX", "64m");
+    private static final long TIMEOUT_MILLIS = Long.parseLong(System.getProperty("LARGE_FILE_TIMEOUT", "300")) * 1000L;
+    private static final long SAMPLE_INTERVAL_MILLIS = 500L;
+
+    private static final Logger logger = LoggerFactory.getLogger(LargeFileInjectionPartGrader.class);
+
+    @Override
+    public GradePart grade(LaunchingContext context) {
+        if (context.hasCompilationFailed()) {
+            return result(List.of("Not trying to start server as compilation failed"), 0.0D);
+        }
+
+        Path gamesFilePath = createLargeJsonGamesFile(context);
+        try {
+            return gradeWithFile(context, gamesFilePath);
+        } finally {
+            try (ClientPools.ChannelLease lease = context.leaseChannel(context.fileInjectorVirtualHost)) {
+                deleteQueue(lease.channel(), QUEUE_NAME);
+            }
+            try {
+                Files.deleteIfExists(gamesFilePath);
+            } catch (IOException e) {
+                logger.warn("Unable to delete " + gamesFilePath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private GradePart gradeWithFile(LaunchingContext context, Path gamesFilePath) {
+        try (ClientPools.ChannelLease lease = context.leaseChannel(context.fileInjectorVirtualHost)) {
+            deleteQueue(lease.channel(), QUEUE_NAME);
+        }
+        createQueue(context.amqpConnection(context.fileInjectorVirtualHost), QUEUE_NAME);
+
+        String springArguments = "-Xmx" + MAX_HEAP + " -XX:+ExitOnOutOfMemoryError " + context.infrastructureArguments(context.fileInjectorVirtualHost);
+        long start = System.currentTimeMillis();
+        long published = 0;
+        long peakResidentSetSize = 0;
+        try (StudentProcess injector = context.startSpringBootModule(LaunchingContext.FILE_INJECTOR_MODULE, springArguments, gamesFilePath.toString());
+             ClientPools.ChannelLease lease = context.leaseChannel(context.fileInjectorVirtualHost)) {
+            long deadline = start + TIMEOUT_MILLIS;
+            try (var ignored = context.metrics.time(name(), Phase.PUBLISH)) {
+                while (published < GAMES && !injector.hasExited() && System.currentTimeMillis() < deadline) {
+                    peakResidentSetSize = Math.max(peakResidentSetSize, injector.residentSetSizeBytes().orElse(0L));
+                    Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                    published = lease.channel().messageCount(QUEUE_NAME);
+                }
+            }
+            published = lease.channel().messageCount(QUEUE_NAME);
+            long elapsed = System.currentTimeMillis() - start;
+
+            String report = String.format("%d of %d games (%d MB) published in %.1f sec (%.0f games/s) with -Xmx%s, peak resident memory of the application %d MB",
+                published, GAMES, fileSize(gamesFilePath) / (1024 * 1024), elapsed / 1000D, published * 1000D / Math.max(elapsed, 1L),
+                MAX_HEAP, peakResidentSetSize / (1024 * 1024));
+            logger.info("[" + context.fileInjectorVirtualHost + "] " + report);
+
+            List<String> errors = new ArrayList<>();
+            errors.add(report);
+            Optional<String> injectorFailure = injector.failure();
+            if (injectorFailure.isPresent()) {
+                if (injectorFailure.get().contains("OutOfMemoryError")) {
+                    errors.add("**file-injector** ran out of memory with -Xmx" + MAX_HEAP + ", games of the given file should be read one at a time rather than all at once");
+                }
+                errors.add(injectorFailure.get());
+                return result(errors, 0.0D);
+            }
+            if (published != GAMES) {
+                errors.add("Only " + published + " of the " + GAMES + " games in given file were published to `" + QUEUE_NAME + "` within " + TIMEOUT_MILLIS / 1000 + " sec");
+                return result(errors, maxGrade() / 2);
+            }
+            return result(List.of(), maxGrade());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not connect to the dockerized RabbitMQ", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result(List.of("Interrupted while waiting for the file-injector"), 0.0D);
+        }
+    }
+
+    /**
+     * Games are written as they are generated, so the grader never holds more than one of them.
+     */
+    private Path createLargeJsonGamesFile(LaunchingContext context) {
+        try {
+            Path path = Files.createTempFile("korekto", "large-games.json").toAbsolutePath();
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024)) {
+                context.newGameGenerator(name()).writeJsonArray(GAMES, context.catalog, outputStream);
+            }
+            logger.info("Injecting " + GAMES + " JSON games from file: " + path);
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long fileSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -1,24 +1,55 @@
 package com.github.lernejo.korekto.grader.video_game_search_engine.parts;
 
+import com.github.lernejo.korekto.grader.video_game_search_engine.GradingMetrics.Phase;
 import com.github.lernejo.korekto.grader.video_game_search_engine.LaunchingContext;
+import com.github.lernejo.korekto.grader.video_game_search_engine.PackagedModule;
 import com.github.lernejo.korekto.toolkit.partgrader.MavenCompileAndTestPartGrader;
 import com.github.lernejo.korekto.toolkit.thirdparty.maven.MavenExecutor;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class MavenCompileTestAndDownloadAdditionalPluginsPartGrader extends MavenCompileAndTestPartGrader<LaunchingContext> {
 
     public static final String SPRING_BOOT_PLUGIN = "org.springframework.boot:spring-boot-maven-plugin:2.6.2";
+    private static final String DEPENDENCY_PLUGIN = "org.apache.maven.plugins:maven-dependency-plugin:3.6.1";
+
+    private static final Logger logger = LoggerFactory.getLogger(MavenCompileTestAndDownloadAdditionalPluginsPartGrader.class);
 
     public MavenCompileTestAndDownloadAdditionalPluginsPartGrader(String name, double maxGrade) {
-        super(name, maxGrade, c -> List.of("verify", "-DargLine='@{argLine} -Dspring.rabbitmq.port=" + c.rabbitMqPort + " -Delasticsearch.port=" + c.elasticSearchPort + "'"));
+        super(name, maxGrade, c -> List.of("verify", "-DargLine='@{argLine} " + c.infrastructureArguments() + "'"));
     }
 
     @Override
     public void afterCompile(LaunchingContext context, @NotNull Path root) {
-        MavenExecutor.executeGoal(context.getExercise(), context.getConfiguration().getWorkspace(),
-            SPRING_BOOT_PLUGIN + ":help");
+        try (var ignored = context.metrics.time(name(), Phase.MAVEN_RUN)) {
+            MavenExecutor.executeGoal(context.getExercise(), context.getConfiguration().getWorkspace(),
+                SPRING_BOOT_PLUGIN + ":help");
+        }
+        if (context.packagedLaunch) {
+            packageLaunchedModules(context, root);
+        }
+    }
+
+    /**
+     * Builds plain jars once and writes the runtime classpath of each module, so that later parts start student modules as plain JVMs instead of re-entering Maven.
+     * Modules without a jar are still started through the Spring Boot plugin.
+     */
+    private void packageLaunchedModules(LaunchingContext context, Path root) {
+        List<String> modules = List.of(LaunchingContext.SEARCH_API_MODULE, LaunchingContext.FILE_INJECTOR_MODULE);
+        try (var ignored = context.metrics.time(name(), Phase.MAVEN_RUN)) {
+            MavenExecutor.executeGoal(context.getExercise(), context.getConfiguration().getWorkspace(),
+                "package " + DEPENDENCY_PLUGIN + ":build-classpath -DskipTests -Dmdep.includeScope=runtime -Dmdep.outputFile=" + PackagedModule.CLASSPATH_FILE
+                    + " -am -pl " + modules.stream().map(m -> ":" + m).collect(Collectors.joining(",")));
+        }
+        for (String module : modules) {
+            PackagedModule.find(root, module).ifPresentOrElse(
+                context::addPackagedModule,
+                () -> logger.warn("No packaged jar found for module " + module + ", it will be started through Maven"));
+        }
     }
 }
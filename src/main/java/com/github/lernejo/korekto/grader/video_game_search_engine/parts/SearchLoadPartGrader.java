@@ -0,0 +1,209 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine.parts;
+
+import com.github.lernejo.korekto.grader.video_game_search_engine.ElasticsearchBulkIndexer;
+import com.github.lernejo.korekto.grader.video_game_search_engine.Game;
+import com.github.lernejo.korekto.grader.video_game_search_engine.GradingMetrics.Phase;
+import com.github.lernejo.korekto.grader.video_game_search_engine.IndexResetter;
+import com.github.lernejo.korekto.grader.video_game_search_engine.LatencyHistogram;
+import com.github.lernejo.korekto.grader.video_game_search_engine.LaunchingContext;
+import com.github.lernejo.korekto.toolkit.GradePart;
+import com.github.lernejo.korekto.toolkit.PartGrader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static com.github.lernejo.korekto.grader.video_game_search_engine.parts.AmqpToEsPartGrader.INDEX_NAME;
+
+/**
+ * Replays a mix of Lucene queries on the search-api from several concurrent clients, over the whole catalog,
+ * and grades latency percentiles and error rate against configurable thresholds.
+ */
+public record SearchLoadPartGrader(String name, Double maxGrade) implements PartGrader<LaunchingContext> {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("LOAD_TEST", "false"));
+    private static final int CONCURRENCY = Integer.parseInt(System.getProperty("LOAD_TEST_CONCURRENCY", "8"));
+    private static final int REQUESTS = Integer.parseInt(System.getProperty("LOAD_TEST_REQUESTS", "400"));
+    private static final int WARMUP_REQUESTS = Integer.parseInt(System.getProperty("LOAD_TEST_WARMUP_REQUESTS", "40"));
+    private static final long P95_THRESHOLD_MILLIS = Long.parseLong(System.getProperty("LOAD_TEST_P95_MILLIS", "250"));
+    private static final long P99_THRESHOLD_MILLIS = Long.parseLong(System.getProperty("LOAD_TEST_P99_MILLIS", "1000"));
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("LOAD_TEST_MAX_ERROR_RATE", "0.01"));
+    private static final int MAX_REPORTED_BODY_LENGTH = 200;
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchLoadPartGrader.class);
+
+    @Override
+    public GradePart grade(LaunchingContext context) {
+        if (context.hasCompilationFailed()) {
+            return result(List.of("Not trying to start server as compilation failed"), 0.0D);
+        }
+
+        Optional<String> startFailure = context.searchApi().ensureStarted(name());
+        if (startFailure.isPresent()) {
+            return result(List.of(startFailure.get()), 0.0D);
+        }
+
+        context.elasticsearchIndexLock.lock();
+        try {
+            return gradeHoldingIndex(context);
+        } finally {
+            context.elasticsearchIndexLock.unlock();
+        }
+    }
+
+    /**
+     * From the seeding of the index to the last query, the index must not be touched by other gradings.
+     */
+    private GradePart gradeHoldingIndex(LaunchingContext context) {
+        new IndexResetter(context.elasticsearchClient()).reset(INDEX_NAME);
+        new ElasticsearchBulkIndexer(context.elasticsearchClient()).index(INDEX_NAME, context.games, context.catalog).orThrow();
+
+        List<String> queries = queries(context.games);
+        Random random = context.newRandom(name());
+        replay(context, queries, WARMUP_REQUESTS, random, null);
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MICROSECONDS);
+        Run run = replay(context, queries, REQUESTS, random, histogram);
+
+        String report = run.report(histogram);
+        logger.info("[" + context.rabbitMqVirtualHost + "] " + report);
+
+        double grade = maxGrade();
+        List<String> errors = new ArrayList<>();
+        double errorRate = (double) run.failed() / REQUESTS;
+        if (errorRate > MAX_ERROR_RATE) {
+            grade -= maxGrade() / 2;
+            errors.add(run.failed() + " requests out of " + REQUESTS + " failed (at most " + (int) (MAX_ERROR_RATE * 100) + "% expected), first one: " + run.firstFailure());
+        }
+        long p95 = histogram.percentile(95);
+        if (p95 > TimeUnit.MILLISECONDS.toMicros(P95_THRESHOLD_MILLIS)) {
+            grade -= maxGrade() / 2;
+            errors.add(String.format("p95 latency is %.1f ms, above %d ms", millis(p95), P95_THRESHOLD_MILLIS));
+        }
+        long p99 = histogram.percentile(99);
+        if (p99 > TimeUnit.MILLISECONDS.toMicros(P99_THRESHOLD_MILLIS)) {
+            grade -= maxGrade() / 4;
+            errors.add(String.format("p99 latency is %.1f ms, above %d ms", millis(p99), P99_THRESHOLD_MILLIS));
+        }
+        if (!errors.isEmpty()) {
+            errors.add(0, report);
+        }
+        return result(errors, Math.max(grade, 0.0D));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000D;
+    }
+
+    /**
+     * One phrase query per distinct genre, platform and publisher of the catalog.
+     */
+    static List<String> queries(List<Game> games) {
+        List<String> queries = new ArrayList<>();
+        addQueries(queries, "genre", games, Game::genre);
+        addQueries(queries, "platform", games, Game::platform);
+        addQueries(queries, "publisher", games, Game::publisher);
+        return queries;
+    }
+
+    private static void addQueries(List<String> queries, String field, List<Game> games, Function<Game, String> valueOf) {
+        games.stream()
+            .map(valueOf)
+            .filter(Objects::nonNull)
+            .distinct()
+            .map(value -> field + ":\"" + value.replace("\"", "\\\"") + "\"")
+            .forEach(queries::add);
+    }
+
+    /**
+     * @param histogram where latencies of successful requests are recorded, null not to record them
+     */
+    private Run replay(LaunchingContext context, List<String> queries, int requestCount, Random random, LatencyHistogram histogram) {
+        List<String> plannedQueries = new ArrayList<>(requestCount);
+        for (int i = 0; i < requestCount; i++) {
+            plannedQueries.add(queries.get(random.nextInt(queries.size())));
+        }
+        AtomicInteger nextRequest = new AtomicInteger();
+        AtomicLong failed = new AtomicLong();
+        AtomicReference<String> firstFailure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY, r -> {
+            Thread thread = new Thread(r, "search-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        try {
+            for (int worker = 0; worker < CONCURRENCY; worker++) {
+                executor.execute(() -> {
+                    int request;
+                    while ((request = nextRequest.getAndIncrement()) < requestCount) {
+                        Optional<String> failure = send(context, plannedQueries.get(request), histogram);
+                        if (failure.isPresent()) {
+                            failed.incrementAndGet();
+                            firstFailure.compareAndSet(null, failure.get());
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
+                logger.warn("Load test of search-api did not end within 5 min");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        return new Run(requestCount, failed.get(), elapsedNanos, firstFailure.get());
+    }
+
+    /**
+     * A response only counts as a success if its body is a list of games, as a fast answer not querying Elasticsearch is no measure.
+     */
+    private Optional<String> send(LaunchingContext context, String luceneQuery, LatencyHistogram histogram) {
+        long start = System.nanoTime();
+        try (var exHolder = context.newExceptionHolder();
+             var ignored = context.metrics.time(name(), Phase.HTTP_QUERY)) {
+            Response<List<Game>> response = context.gameApiClient.getGames(luceneQuery).execute();
+            if (!response.isSuccessful()) {
+                return Optional.of("GET /api/games?query=" + luceneQuery + " answered " + response.code());
+            }
+            if (exHolder.getLatestDeserializationProblem() != null) {
+                return Optional.of("GET /api/games?query=" + luceneQuery + " answered a body which is not a list of games: " + abbreviate(exHolder.getLatestDeserializationProblem().rawBody()));
+            }
+        } catch (IOException | RuntimeException e) {
+            return Optional.of("GET /api/games?query=" + luceneQuery + " failed: " + e.getMessage());
+        }
+        if (histogram != null) {
+            histogram.recordNanos(System.nanoTime() - start);
+        }
+        return Optional.empty();
+    }
+
+    private static String abbreviate(String rawBody) {
+        return rawBody.length() <= MAX_REPORTED_BODY_LENGTH ? rawBody : rawBody.substring(0, MAX_REPORTED_BODY_LENGTH) + "...";
+    }
+
+    private record Run(int requests, long failed, long elapsedNanos, String firstFailure) {
+
+        String report(LatencyHistogram histogram) {
+            double seconds = elapsedNanos / 1_000_000_000D;
+            return String.format("%d requests from %d clients in %.1f sec (%.0f req/s): p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms, %d failed",
+                requests, CONCURRENCY, seconds, requests / seconds,
+                millis(histogram.percentile(50)), millis(histogram.percentile(95)), millis(histogram.percentile(99)), millis(histogram.max()), failed);
+        }
+    }
+}
@@ -0,0 +1,1058 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers the part of the Elasticsearch 7 REST API used by the grader and by students' apps, from documents held in memory.
+ * <p>
+ * Documents are searchable as soon as they are written, so refreshes do nothing.
+ * Queries are limited to `match_all`, `ids`, `term`, `terms`, `match`, `match_phrase`, `exists`, `bool` and `query_string`
+ * (field:value and field:"phrase" clauses, grouped and joined with AND, OR and NOT);
+ * text is matched on lower-cased alphanumeric tokens instead of being analyzed, and every hit scores 1.
+ * Anything else is answered with a 400, so that an unsupported call is noticed rather than silently mis-answered.
+ */
+class ElasticsearchStandIn implements AutoCloseable {
+
+    private static final String VERSION = "7.16.3";
+    private static final Pattern QUERY_STRING_TOKEN = Pattern.compile("\\(|\\)|(?:[\\w.*]+:)?(?:\"[^\"]*\"|[^\\s()\"]+)");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ObjectMapper om = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, StoredIndex> indices = new LinkedHashMap<>();
+    private final Map<String, Set<String>> aliases = new LinkedHashMap<>();
+    private final Map<String, List<StoredDocument>> pointsInTime = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ElasticsearchStandIn(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    static ElasticsearchStandIn start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "elasticsearch-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ElasticsearchStandIn standIn = new ElasticsearchStandIn(server, executor);
+        server.createContext("/", standIn::handle);
+        server.setExecutor(executor);
+        server.start();
+        return standIn;
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Response response;
+            try {
+                response = route(Request.of(exchange, om));
+            } catch (StandInException e) {
+                response = error(e.status, e.type, e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                response = error(e instanceof IOException ? 400 : 500, "exception", String.valueOf(e.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response = error(500, "exception", "Interrupted");
+            }
+            exchange.getResponseHeaders().add("X-elastic-product", "Elasticsearch");
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+            if (exchange.getRequestMethod().equals("HEAD") || response.body() == null) {
+                exchange.sendResponseHeaders(response.status(), -1);
+            } else {
+                byte[] body = om.writeValueAsBytes(response.body());
+                exchange.sendResponseHeaders(response.status(), body.length);
+                exchange.getResponseBody().write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response route(Request request) throws IOException, InterruptedException {
+        List<String> path = request.path();
+        String method = request.method();
+        if (path.isEmpty()) {
+            return ok(info());
+        }
+        String first = path.get(0);
+        switch (first) {
+            case "_cluster":
+                if (path.size() >= 2 && path.get(1).equals("health")) {
+                    return health(path.size() > 2 ? path.get(2) : null, request);
+                }
+                break;
+            case "_aliases":
+                return updateAliases(request.json());
+            case "_bulk":
+                return bulk(null, request.body());
+            case "_pit":
+                return closePointInTime(request.json());
+            case "_search":
+                return search("_all", request);
+            case "_count":
+                return count("_all", request);
+            default:
+                if (path.size() == 1) {
+                    switch (method) {
+                        case "HEAD":
+                            return new Response(resolve(first, true).isEmpty() ? 404 : 200, null);
+                        case "PUT":
+                            return createIndex(first, request.json());
+                        case "GET":
+                            return getIndices(first, request.flag("ignore_unavailable"));
+                        case "DELETE":
+                            return deleteIndices(first, request.flag("ignore_unavailable"));
+                        default:
+                            break;
+                    }
+                    break;
+                }
+                return routeIndexAction(first, path, request);
+        }
+        throw unsupported(request);
+    }
+
+    private Response routeIndexAction(String index, List<String> path, Request request) throws IOException {
+        String action = path.get(1);
+        String method = request.method();
+        switch (action) {
+            case "_doc":
+            case "_create":
+                boolean create = action.equals("_create") || "create".equals(request.params().get("op_type"));
+                if (path.size() == 2 && method.equals("POST")) {
+                    return indexDocument(index, null, request.json(), create);
+                }
+                if (path.size() == 3) {
+                    String id = path.get(2);
+                    switch (method) {
+                        case "GET":
+                        case "HEAD":
+                            return getDocument(index, id);
+                        case "PUT":
+                        case "POST":
+                            return indexDocument(index, id, request.json(), create);
+                        case "DELETE":
+                            return deleteDocument(index, id);
+                        default:
+                            break;
+                    }
+                }
+                break;
+            case "_bulk":
+                return bulk(index, request.body());
+            case "_refresh":
+            case "_flush":
+                resolve(index, false);
+                return ok(om.createObjectNode().set("_shards", shards()));
+            case "_search":
+                return search(index, request);
+            case "_count":
+                return count(index, request);
+            case "_pit":
+                return openPointInTime(index);
+            case "_delete_by_query":
+                return deleteByQuery(index, request);
+            case "_mapping":
+                if (method.equals("GET")) {
+                    return getMappings(index);
+                }
+                return putMapping(index, request.json());
+            default:
+                break;
+        }
+        throw unsupported(request);
+    }
+
+    private ObjectNode info() {
+        ObjectNode info = om.createObjectNode()
+            .put("name", "stand-in")
+            .put("cluster_name", "korekto")
+            .put("cluster_uuid", "stand-in")
+            .put("tagline", "You Know, for Search");
+        info.putObject("version")
+            .put("number", VERSION)
+            .put("build_flavor", "default")
+            .put("build_type", "docker")
+            .put("build_hash", "stand-in")
+            .put("build_date", "2022-01-06T23:43:02.825887787Z")
+            .put("build_snapshot", false)
+            .put("lucene_version", "8.10.1")
+            .put("minimum_wire_compatibility_version", "6.8.0")
+            .put("minimum_index_compatibility_version", "6.0.0-beta1");
+        return info;
+    }
+
+    /**
+     * Waits, at most for the given timeout, for the given index to exist.
+     */
+    private Response health(String index, Request request) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + parseMillis(request.params().getOrDefault("timeout", "30s"));
+        while (index != null && resolve(index, true).isEmpty()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return new Response(408, healthStatus("red", true));
+            }
+            Thread.sleep(50L);
+        }
+        return ok(healthStatus("green", false));
+    }
+
+    private ObjectNode healthStatus(String status, boolean timedOut) {
+        return om.createObjectNode()
+            .put("cluster_name", "korekto")
+            .put("status", status)
+            .put("timed_out", timedOut)
+            .put("number_of_nodes", 1)
+            .put("number_of_data_nodes", 1)
+            .put("active_primary_shards", 1)
+            .put("active_shards", 1)
+            .put("relocating_shards", 0)
+            .put("initializing_shards", 0)
+            .put("unassigned_shards", 0)
+            .put("unassigned_primary_shards", 0)
+            .put("delayed_unassigned_shards", 0)
+            .put("number_of_pending_tasks", 0)
+            .put("number_of_in_flight_fetch", 0)
+            .put("task_max_waiting_in_queue_millis", 0)
+            .put("active_shards_percent_as_number", 100.0D);
+    }
+
+    private synchronized Response createIndex(String name, JsonNode body) {
+        if (indices.containsKey(name) || aliases.containsKey(name)) {
+            throw new StandInException(400, "resource_already_exists_exception", "index [" + name + "] already exists");
+        }
+        ObjectNode mappings = body != null && body.has("mappings") ? body.get("mappings").deepCopy() : om.createObjectNode();
+        JsonNode settings = body == null ? null : body.get("settings");
+        if (settings != null && settings.has("index")) {
+            settings = settings.get("index");
+        }
+        indices.put(name, new StoredIndex(mappings, settings == null ? om.createObjectNode() : settings.deepCopy()));
+        if (body != null && body.has("aliases")) {
+            body.get("aliases").fieldNames().forEachRemaining(alias -> aliases.computeIfAbsent(alias, a -> new LinkedHashSet<>()).add(name));
+        }
+        return ok(om.createObjectNode()
+            .put("acknowledged", true)
+            .put("shards_acknowledged", true)
+            .put("index", name));
+    }
+
+    private synchronized Response getIndices(String expression, boolean ignoreUnavailable) {
+        ObjectNode response = om.createObjectNode();
+        for (String name : resolve(expression, ignoreUnavailable)) {
+            StoredIndex index = indices.get(name);
+            ObjectNode state = response.putObject(name);
+            ObjectNode indexAliases = state.putObject("aliases");
+            aliases.forEach((alias, names) -> {
+                if (names.contains(name)) {
+                    indexAliases.putObject(alias);
+                }
+            });
+            state.set("mappings", index.mappings().deepCopy());
+            ObjectNode settings = index.settings().deepCopy();
+            settings.put("provided_name", name);
+            if (!settings.has("number_of_shards")) {
+                settings.put("number_of_shards", "1");
+            }
+            if (!settings.has("number_of_replicas")) {
+                settings.put("number_of_replicas", "1");
+            }
+            state.putObject("settings").set("index", settings);
+        }
+        return ok(response);
+    }
+
+    private synchronized Response deleteIndices(String expression, boolean ignoreUnavailable) {
+        for (String name : expression.split(",")) {
+            if (!name.contains("*") && aliases.containsKey(name) && !indices.containsKey(name)) {
+                throw new StandInException(400, "illegal_argument_exception", "The provided expression [" + name + "] matches an alias, specify the corresponding concrete indices instead.");
+            }
+        }
+        resolve(expression, ignoreUnavailable).forEach(this::removeIndex);
+        return ok(om.createObjectNode().put("acknowledged", true));
+    }
+
+    private void removeIndex(String name) {
+        indices.remove(name);
+        aliases.values().forEach(names -> names.remove(name));
+        aliases.values().removeIf(Set::isEmpty);
+    }
+
+    private synchronized Response getMappings(String expression) {
+        ObjectNode response = om.createObjectNode();
+        for (String name : resolve(expression, false)) {
+            response.putObject(name).set("mappings", indices.get(name).mappings().deepCopy());
+        }
+        return ok(response);
+    }
+
+    private synchronized Response putMapping(String expression, JsonNode body) {
+        for (String name : resolve(expression, false)) {
+            ObjectNode mappings = indices.get(name).mappings();
+            if (body != null && body.has("properties")) {
+                mappings.with("properties").setAll((ObjectNode) body.get("properties").deepCopy());
+            }
+        }
+        return ok(om.createObjectNode().put("acknowledged", true));
+    }
+
+    /**
+     * Actions are applied to copies, swapped in only once all succeeded, as the whole request is atomic.
+     */
+    private synchronized Response updateAliases(JsonNode body) {
+        Map<String, StoredIndex> newIndices = new LinkedHashMap<>(indices);
+        Map<String, Set<String>> newAliases = new LinkedHashMap<>();
+        aliases.forEach((alias, names) -> newAliases.put(alias, new LinkedHashSet<>(names)));
+        for (JsonNode action : body.path("actions")) {
+            Map.Entry<String, JsonNode> entry = action.fields().next();
+            JsonNode spec = entry.getValue();
+            List<String> targets = new ArrayList<>();
+            for (String pattern : names(spec, "index", "indices")) {
+                List<String> matching = newIndices.keySet().stream().filter(name -> matchesPattern(pattern, name)).toList();
+                if (matching.isEmpty()) {
+                    throw indexNotFound(pattern);
+                }
+                targets.addAll(matching);
+            }
+            List<String> actionAliases = names(spec, "alias", "aliases");
+            switch (entry.getKey()) {
+                case "add" -> {
+                    for (String alias : actionAliases) {
+                        if (newIndices.containsKey(alias)) {
+                            throw new StandInException(400, "invalid_alias_name_exception", "Invalid alias name [" + alias + "]: an index or data stream exists with the same name as the alias");
+                        }
+                        newAliases.computeIfAbsent(alias, a -> new LinkedHashSet<>()).addAll(targets);
+                    }
+                }
+                case "remove" -> {
+                    for (String alias : actionAliases) {
+                        Set<String> names = newAliases.get(alias);
+                        if (names == null || !names.containsAll(targets)) {
+                            throw new StandInException(404, "aliases_not_found_exception", "aliases [" + alias + "] missing");
+                        }
+                        names.removeAll(targets);
+                    }
+                }
+                case "remove_index" -> targets.forEach(name -> {
+                    newIndices.remove(name);
+                    newAliases.values().forEach(names -> names.remove(name));
+                });
+                default -> throw new StandInException(400, "parsing_exception", "Unknown alias action [" + entry.getKey() + "]");
+            }
+        }
+        newAliases.values().removeIf(Set::isEmpty);
+        indices.clear();
+        indices.putAll(newIndices);
+        aliases.clear();
+        aliases.putAll(newAliases);
+        return ok(om.createObjectNode().put("acknowledged", true));
+    }
+
+    private static List<String> names(JsonNode spec, String single, String plural) {
+        List<String> names = new ArrayList<>();
+        if (spec.hasNonNull(single)) {
+            names.add(spec.get(single).asText());
+        }
+        spec.path(plural).forEach(name -> names.add(name.asText()));
+        if (spec.path(plural).isTextual()) {
+            names.add(spec.get(plural).asText());
+        }
+        return names;
+    }
+
+    private synchronized Response indexDocument(String target, String id, JsonNode source, boolean create) {
+        ObjectNode result = write(target, id, source, create);
+        return new Response(result.get("result").asText().equals("created") ? 201 : 200, result);
+    }
+
+    private ObjectNode write(String target, String id, JsonNode source, boolean create) {
+        if (!(source instanceof ObjectNode)) {
+            throw new StandInException(400, "mapper_parsing_exception", "failed to parse, document is empty or not an object");
+        }
+        String index = writeIndex(target);
+        String documentId = id == null ? UUID.randomUUID().toString() : id;
+        Map<String, StoredDocument> documents = indices.get(index).documents();
+        StoredDocument previous = documents.get(documentId);
+        if (create && previous != null) {
+            throw new StandInException(409, "version_conflict_engine_exception", "[" + documentId + "]: version conflict, document already exists");
+        }
+        StoredDocument document = new StoredDocument(index, documentId, previous == null ? 1 : previous.version() + 1, sequence.incrementAndGet(), source.deepCopy());
+        documents.put(documentId, document);
+        return writeResult(document, previous == null ? "created" : "updated");
+    }
+
+    private ObjectNode writeResult(StoredDocument document, String result) {
+        ObjectNode response = om.createObjectNode()
+            .put("_index", document.index())
+            .put("_type", "_doc")
+            .put("_id", document.id())
+            .put("_version", document.version())
+            .put("result", result)
+            .put("_seq_no", document.sequence())
+            .put("_primary_term", 1);
+        response.set("_shards", shards());
+        return response;
+    }
+
+    private synchronized Response getDocument(String target, String id) {
+        for (String index : resolve(target, false)) {
+            StoredDocument document = indices.get(index).documents().get(id);
+            if (document != null) {
+                ObjectNode response = om.createObjectNode()
+                    .put("_index", index)
+                    .put("_type", "_doc")
+                    .put("_id", id)
+                    .put("_version", document.version())
+                    .put("_seq_no", document.sequence())
+                    .put("_primary_term", 1)
+                    .put("found", true);
+                response.set("_source", document.source());
+                return ok(response);
+            }
+        }
+        return new Response(404, om.createObjectNode().put("_index", target).put("_type", "_doc").put("_id", id).put("found", false));
+    }
+
+    private synchronized Response deleteDocument(String target, String id) {
+        String index = writeIndex(target);
+        StoredDocument removed = indices.get(index).documents().remove(id);
+        StoredDocument reported = removed != null ? removed : new StoredDocument(index, id, 1, sequence.incrementAndGet(), null);
+        return new Response(removed == null ? 404 : 200, writeResult(reported, removed == null ? "not_found" : "deleted"));
+    }
+
+    private synchronized Response bulk(String defaultIndex, byte[] body) throws IOException {
+        long start = System.currentTimeMillis();
+        List<String> lines = new String(body, StandardCharsets.UTF_8).lines().filter(line -> !line.isBlank()).toList();
+        ArrayNode items = om.createArrayNode();
+        boolean errors = false;
+        for (int i = 0; i < lines.size(); i++) {
+            Map.Entry<String, JsonNode> action = om.readTree(lines.get(i)).fields().next();
+            String operation = action.getKey();
+            String index = action.getValue().path("_index").asText(defaultIndex);
+            String id = action.getValue().hasNonNull("_id") ? action.getValue().get("_id").asText() : null;
+            JsonNode source = operation.equals("delete") ? null : om.readTree(lines.get(++i));
+            ObjectNode item;
+            try {
+                item = switch (operation) {
+                    case "index" -> write(index, id, source, false);
+                    case "create" -> write(index, id, source, true);
+                    case "update" -> update(index, id, source);
+                    case "delete" -> {
+                        Response response = deleteDocument(index, id);
+                        yield ((ObjectNode) response.body()).put("status", response.status());
+                    }
+                    default -> throw new StandInException(400, "illegal_argument_exception", "Unknown bulk action [" + operation + "]");
+                };
+                if (!item.has("status")) {
+                    item.put("status", item.get("result").asText().equals("created") ? 201 : 200);
+                }
+            } catch (StandInException e) {
+                errors = true;
+                item = om.createObjectNode().put("_index", index).put("_id", id).put("status", e.status);
+                item.putObject("error").put("type", e.type).put("reason", e.getMessage());
+            }
+            items.addObject().set(operation, item);
+        }
+        ObjectNode response = om.createObjectNode()
+            .put("took", System.currentTimeMillis() - start)
+            .put("errors", errors);
+        response.set("items", items);
+        return ok(response);
+    }
+
+    private ObjectNode update(String target, String id, JsonNode body) {
+        String index = writeIndex(target);
+        StoredDocument previous = indices.get(index).documents().get(id);
+        if (previous == null && !body.path("doc_as_upsert").asBoolean(false)) {
+            if (body.has("upsert")) {
+                return write(index, id, body.get("upsert"), false);
+            }
+            throw new StandInException(404, "document_missing_exception", "[" + id + "]: document missing");
+        }
+        ObjectNode merged = previous == null ? om.createObjectNode() : previous.source().deepCopy();
+        merged.setAll((ObjectNode) body.get("doc"));
+        return write(index, id, merged, false);
+    }
+
+    private Response search(String target, Request request) {
+        long start = System.currentTimeMillis();
+        JsonNode body = request.json();
+        JsonNode pit = body == null ? null : body.get("pit");
+        List<StoredDocument> candidates;
+        if (pit != null) {
+            candidates = pointsInTime.get(pit.path("id").asText());
+            if (candidates == null) {
+                throw new StandInException(404, "search_context_missing_exception", "No search context found for id [" + pit.path("id").asText() + "]");
+            }
+        } else {
+            candidates = documents(target);
+        }
+        JsonNode query = query(body, request);
+        List<JsonNode> sort = sortFields(body == null ? null : body.get("sort"));
+        Comparator<StoredDocument> comparator = comparator(sort);
+        List<StoredDocument> matching = candidates.stream()
+            .filter(document -> matches(query, document))
+            .sorted(comparator)
+            .toList();
+        JsonNode searchAfter = body == null ? null : body.get("search_after");
+        List<StoredDocument> page = matching.stream()
+            .filter(document -> searchAfter == null || compareSortValues(sortValues(sort, document), searchAfter, sort) > 0)
+            .skip(body != null && body.has("from") ? body.get("from").asInt() : Integer.parseInt(request.params().getOrDefault("from", "0")))
+            .limit(body != null && body.has("size") ? body.get("size").asInt() : Integer.parseInt(request.params().getOrDefault("size", "10")))
+            .toList();
+
+        ObjectNode response = om.createObjectNode()
+            .put("took", System.currentTimeMillis() - start)
+            .put("timed_out", false);
+        if (pit != null) {
+            response.put("pit_id", pit.path("id").asText());
+        }
+        response.set("_shards", shards());
+        ObjectNode hits = response.putObject("hits");
+        if (body == null || !body.path("track_total_hits").isBoolean() || body.get("track_total_hits").asBoolean()) {
+            hits.putObject("total").put("value", matching.size()).put("relation", "eq");
+        }
+        if (sort.isEmpty() && !page.isEmpty()) {
+            hits.put("max_score", 1.0D);
+        } else {
+            hits.putNull("max_score");
+        }
+        ArrayNode hitList = hits.putArray("hits");
+        for (StoredDocument document : page) {
+            ObjectNode hit = hitList.addObject()
+                .put("_index", document.index())
+                .put("_type", "_doc")
+                .put("_id", document.id());
+            if (sort.isEmpty()) {
+                hit.put("_score", 1.0D);
+            } else {
+                hit.putNull("_score");
+                hit.set("sort", sortValues(sort, document));
+            }
+            hit.set("_source", document.source());
+        }
+        return ok(response);
+    }
+
+    private Response count(String target, Request request) {
+        JsonNode query = query(request.json(), request);
+        long count = documents(target).stream().filter(document -> matches(query, document)).count();
+        ObjectNode response = om.createObjectNode().put("count", count);
+        response.set("_shards", shards());
+        return ok(response);
+    }
+
+    private synchronized Response deleteByQuery(String target, Request request) {
+        long start = System.currentTimeMillis();
+        JsonNode query = query(request.json(), request);
+        List<StoredDocument> deleted = documents(target).stream().filter(document -> matches(query, document)).toList();
+        deleted.forEach(document -> indices.get(document.index()).documents().remove(document.id()));
+        ObjectNode response = om.createObjectNode()
+            .put("took", System.currentTimeMillis() - start)
+            .put("timed_out", false)
+            .put("total", deleted.size())
+            .put("deleted", deleted.size())
+            .put("batches", 1)
+            .put("version_conflicts", 0)
+            .put("noops", 0)
+            .put("throttled_millis", 0)
+            .put("requests_per_second", -1.0D)
+            .put("throttled_until_millis", 0);
+        response.putObject("retries").put("bulk", 0).put("search", 0);
+        response.putArray("failures");
+        return ok(response);
+    }
+
+    private Response openPointInTime(String target) {
+        String id = UUID.randomUUID().toString();
+        pointsInTime.put(id, documents(target));
+        ObjectNode response = om.createObjectNode().put("id", id);
+        response.set("_shards", shards());
+        return ok(response);
+    }
+
+    private Response closePointInTime(JsonNode body) {
+        boolean freed = body != null && pointsInTime.remove(body.path("id").asText()) != null;
+        return ok(om.createObjectNode().put("succeeded", true).put("num_freed", freed ? 1 : 0));
+    }
+
+    /**
+     * @return a snapshot of the documents of the given indexes, in writing order
+     */
+    private synchronized List<StoredDocument> documents(String target) {
+        List<StoredDocument> documents = new ArrayList<>();
+        for (String index : resolve(target, false)) {
+            documents.addAll(indices.get(index).documents().values());
+        }
+        documents.sort(Comparator.comparingLong(StoredDocument::sequence));
+        return documents;
+    }
+
+    /**
+     * @return the concrete indexes behind the given comma-separated names, aliases and patterns
+     */
+    private synchronized List<String> resolve(String expression, boolean ignoreUnavailable) {
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String name : expression.split(",")) {
+            if (name.equals("_all") || name.contains("*")) {
+                indices.keySet().stream().filter(index -> matchesPattern(name, index)).forEach(resolved::add);
+                aliases.forEach((alias, names) -> {
+                    if (matchesPattern(name, alias)) {
+                        resolved.addAll(names);
+                    }
+                });
+            } else if (indices.containsKey(name)) {
+                resolved.add(name);
+            } else if (aliases.containsKey(name)) {
+                resolved.addAll(aliases.get(name));
+            } else if (!ignoreUnavailable) {
+                throw indexNotFound(name);
+            }
+        }
+        return List.copyOf(resolved);
+    }
+
+    /**
+     * @return the concrete index written to through the given name, created if missing, as by Elasticsearch
+     */
+    private String writeIndex(String name) {
+        if (indices.containsKey(name)) {
+            return name;
+        }
+        Set<String> names = aliases.get(name);
+        if (names == null) {
+            indices.put(name, new StoredIndex(om.createObjectNode(), om.createObjectNode()));
+            return name;
+        }
+        if (names.size() != 1) {
+            throw new StandInException(400, "illegal_argument_exception", "no write index is defined for alias [" + name + "]");
+        }
+        return names.iterator().next();
+    }
+
+    private static boolean matchesPattern(String pattern, String name) {
+        if (pattern.equals("_all")) {
+            return !name.startsWith(".");
+        }
+        return name.matches(Arrays.stream(pattern.split("\\*", -1)).map(Pattern::quote).reduce((a, b) -> a + ".*" + b).orElse(""));
+    }
+
+    private JsonNode query(JsonNode body, Request request) {
+        if (request.params().containsKey("q")) {
+            return om.createObjectNode().set("query_string", om.createObjectNode()
+                .put("query", request.params().get("q"))
+                .put("default_field", request.params().getOrDefault("df", "*"))
+                .put("default_operator", request.params().getOrDefault("default_operator", "OR")));
+        }
+        return body == null ? null : body.get("query");
+    }
+
+    private boolean matches(JsonNode query, StoredDocument document) {
+        if (query == null || query.isNull() || query.isEmpty()) {
+            return true;
+        }
+        Map.Entry<String, JsonNode> clause = query.fields().next();
+        JsonNode spec = clause.getValue();
+        return switch (clause.getKey()) {
+            case "match_all" -> true;
+            case "match_none" -> false;
+            case "ids" -> contains(spec.path("values"), document.id());
+            case "exists" -> !values(document.source(), spec.path("field").asText()).isEmpty();
+            case "term" -> fieldClause(spec, "value", document, (value, expected) -> value.equals(expected));
+            case "terms" -> {
+                Map.Entry<String, JsonNode> field = spec.fields().next();
+                yield values(document.source(), field.getKey()).stream().anyMatch(value -> contains(field.getValue(), value));
+            }
+            case "match" -> fieldClause(spec, "query", document, (value, expected) -> tokens(expected).stream().anyMatch(tokens(value)::contains));
+            case "match_phrase" -> fieldClause(spec, "query", document, ElasticsearchStandIn::containsPhrase);
+            case "bool" -> bool(spec, document);
+            case "query_string", "simple_query_string" -> new QueryString(
+                spec.path("query").asText(),
+                spec.path("default_field").asText("*"),
+                spec.path("default_operator").asText("OR").equalsIgnoreCase("AND"),
+                document.source()).matches();
+            default -> throw new StandInException(400, "parsing_exception", "Query [" + clause.getKey() + "] is not supported by the Elasticsearch stand-in");
+        };
+    }
+
+    private boolean bool(JsonNode spec, StoredDocument document) {
+        for (String mandatory : List.of("must", "filter")) {
+            for (JsonNode clause : clauses(spec.get(mandatory))) {
+                if (!matches(clause, document)) {
+                    return false;
+                }
+            }
+        }
+        for (JsonNode clause : clauses(spec.get("must_not"))) {
+            if (matches(clause, document)) {
+                return false;
+            }
+        }
+        List<JsonNode> should = clauses(spec.get("should"));
+        if (should.isEmpty()) {
+            return true;
+        }
+        int minimumShouldMatch = spec.has("minimum_should_match") ? spec.get("minimum_should_match").asInt()
+            : spec.has("must") || spec.has("filter") ? 0 : 1;
+        return should.stream().filter(clause -> matches(clause, document)).count() >= minimumShouldMatch;
+    }
+
+    private static List<JsonNode> clauses(JsonNode node) {
+        if (node == null) {
+            return List.of();
+        }
+        if (node.isArray()) {
+            List<JsonNode> clauses = new ArrayList<>();
+            node.forEach(clauses::add);
+            return clauses;
+        }
+        return List.of(node);
+    }
+
+    private boolean fieldClause(JsonNode spec, String valueName, StoredDocument document, BiPredicate<String, String> matcher) {
+        Map.Entry<String, JsonNode> field = spec.fields().next();
+        String expected = field.getValue().isObject() ? field.getValue().path(valueName).asText() : field.getValue().asText();
+        return values(document.source(), field.getKey()).stream().anyMatch(value -> matcher.test(value, expected));
+    }
+
+    private static boolean contains(JsonNode array, String value) {
+        for (JsonNode element : array) {
+            if (element.asText().equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param field a dotted path, `.keyword` sub-fields being the field itself, or `*` for all fields
+     */
+    private static List<String> values(JsonNode source, String field) {
+        List<String> values = new ArrayList<>();
+        if (field.equals("*")) {
+            collect(source, values);
+            return values;
+        }
+        JsonNode node = source;
+        for (String part : field.replaceFirst("\\.keyword$", "").split("\\.")) {
+            node = node == null ? null : node.get(part);
+        }
+        if (node != null) {
+            collect(node, values);
+        }
+        return values;
+    }
+
+    private static void collect(JsonNode node, List<String> values) {
+        if (node.isContainerNode()) {
+            node.forEach(child -> collect(child, values));
+        } else if (!node.isNull()) {
+            values.add(node.asText());
+        }
+    }
+
+    private static List<String> tokens(String text) {
+        return Arrays.stream(NON_ALPHANUMERIC.split(text.toLowerCase(Locale.ROOT))).filter(token -> !token.isEmpty()).toList();
+    }
+
+    private static boolean containsPhrase(String value, String phrase) {
+        List<String> phraseTokens = tokens(phrase);
+        return !phraseTokens.isEmpty() && (" " + String.join(" ", tokens(value)) + " ").contains(" " + String.join(" ", phraseTokens) + " ");
+    }
+
+    private static boolean matchesTerm(String value, String term) {
+        if (term.contains("*")) {
+            String regex = Arrays.stream(term.toLowerCase(Locale.ROOT).split("\\*", -1)).map(Pattern::quote).reduce((a, b) -> a + ".*" + b).orElse("");
+            return tokens(value).stream().anyMatch(token -> token.matches(regex)) || value.toLowerCase(Locale.ROOT).matches(regex);
+        }
+        return value.equalsIgnoreCase(term) || containsPhrase(value, term);
+    }
+
+    private List<JsonNode> sortFields(JsonNode sort) {
+        List<JsonNode> fields = new ArrayList<>();
+        for (JsonNode field : clauses(sort)) {
+            if (field.isTextual()) {
+                fields.add(om.createObjectNode().put(field.asText(), "asc"));
+            } else {
+                field.fields().forEachRemaining(entry -> fields.add(om.createObjectNode().set(entry.getKey(), entry.getValue())));
+            }
+        }
+        fields.removeIf(field -> field.has("_score"));
+        return fields;
+    }
+
+    private ArrayNode sortValues(List<JsonNode> sort, StoredDocument document) {
+        ArrayNode values = om.createArrayNode();
+        for (JsonNode field : sort) {
+            String name = field.fieldNames().next();
+            switch (name) {
+                case "_shard_doc", "_doc" -> values.add(document.sequence());
+                case "_id" -> values.add(document.id());
+                default -> {
+                    JsonNode value = document.source().at("/" + name.replaceFirst("\\.keyword$", "").replace('.', '/'));
+                    List<String> fieldValues = values(document.source(), name);
+                    if (value.isValueNode()) {
+                        values.add(value);
+                    } else if (fieldValues.isEmpty()) {
+                        values.addNull();
+                    } else {
+                        values.add(fieldValues.get(0));
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private Comparator<StoredDocument> comparator(List<JsonNode> sort) {
+        if (sort.isEmpty()) {
+            return Comparator.comparingLong(StoredDocument::sequence);
+        }
+        return (a, b) -> compareSortValues(sortValues(sort, a), sortValues(sort, b), sort);
+    }
+
+    private static int compareSortValues(JsonNode values, JsonNode others, List<JsonNode> sort) {
+        for (int i = 0; i < sort.size(); i++) {
+            JsonNode order = sort.get(i).elements().next();
+            boolean descending = (order.isObject() ? order.path("order").asText() : order.asText()).equalsIgnoreCase("desc");
+            int comparison = compareValues(values.get(i), others.get(i));
+            if (comparison != 0) {
+                return descending ? -comparison : comparison;
+            }
+        }
+        return 0;
+    }
+
+    private static int compareValues(JsonNode value, JsonNode other) {
+        boolean missing = value == null || value.isNull();
+        boolean otherMissing = other == null || other.isNull();
+        if (missing || otherMissing) {
+            return Boolean.compare(missing, otherMissing);
+        }
+        if (value.isNumber() && other.isNumber()) {
+            return Double.compare(value.asDouble(), other.asDouble());
+        }
+        return value.asText().compareTo(other.asText());
+    }
+
+    private ObjectNode shards() {
+        return om.createObjectNode()
+            .put("total", 1)
+            .put("successful", 1)
+            .put("skipped", 0)
+            .put("failed", 0);
+    }
+
+    private static long parseMillis(String duration) {
+        Matcher matcher = Pattern.compile("(\\d+)(ms|s|m)?").matcher(duration);
+        if (!matcher.matches()) {
+            throw new StandInException(400, "parse_exception", "failed to parse [" + duration + "]");
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2) == null ? "ms" : matcher.group(2)) {
+            case "s" -> amount * 1000L;
+            case "m" -> amount * 60_000L;
+            default -> amount;
+        };
+    }
+
+    private Response ok(JsonNode body) {
+        return new Response(200, body);
+    }
+
+    private Response error(int status, String type, String reason) {
+        ObjectNode response = om.createObjectNode();
+        ObjectNode error = response.putObject("error");
+        error.putArray("root_cause").addObject().put("type", type).put("reason", reason);
+        error.put("type", type).put("reason", reason);
+        response.put("status", status);
+        return new Response(status, response);
+    }
+
+    private static StandInException indexNotFound(String name) {
+        return new StandInException(404, "index_not_found_exception", "no such index [" + name + "]");
+    }
+
+    private static StandInException unsupported(Request request) {
+        return new StandInException(400, "illegal_argument_exception", request.method() + " /" + String.join("/", request.path()) + " is not supported by the Elasticsearch stand-in");
+    }
+
+    /**
+     * Evaluates a Lucene query string against a document, with AND binding tighter than OR and juxtaposition
+     * standing for the default operator.
+     */
+    private static final class QueryString {
+        private final List<String> tokens = new ArrayList<>();
+        private final String defaultField;
+        private final boolean defaultAnd;
+        private final JsonNode source;
+        private int position;
+
+        private QueryString(String query, String defaultField, boolean defaultAnd, JsonNode source) {
+            Matcher matcher = QUERY_STRING_TOKEN.matcher(query);
+            while (matcher.find()) {
+                tokens.add(matcher.group());
+            }
+            this.defaultField = defaultField;
+            this.defaultAnd = defaultAnd;
+            this.source = source;
+        }
+
+        boolean matches() {
+            boolean matches = or();
+            if (position < tokens.size()) {
+                throw new StandInException(400, "query_shard_exception", "Failed to parse query, unexpected [" + tokens.get(position) + "]");
+            }
+            return matches;
+        }
+
+        private boolean or() {
+            boolean matches = and();
+            while (position < tokens.size() && !tokens.get(position).equals(")")) {
+                if (tokens.get(position).equals("OR")) {
+                    position++;
+                    matches |= and();
+                } else if (defaultAnd) {
+                    matches &= and();
+                } else {
+                    matches |= and();
+                }
+            }
+            return matches;
+        }
+
+        private boolean and() {
+            boolean matches = unary();
+            while (position < tokens.size() && tokens.get(position).equals("AND")) {
+                position++;
+                matches &= unary();
+            }
+            return matches;
+        }
+
+        private boolean unary() {
+            if (position >= tokens.size()) {
+                throw new StandInException(400, "query_shard_exception", "Failed to parse query, unexpected end");
+            }
+            String token = tokens.get(position++);
+            if (token.equals("NOT")) {
+                return !unary();
+            }
+            if (token.equals("(")) {
+                boolean matches = or();
+                if (position >= tokens.size() || !tokens.get(position++).equals(")")) {
+                    throw new StandInException(400, "query_shard_exception", "Failed to parse query, missing )");
+                }
+                return matches;
+            }
+            int colon = token.startsWith("\"") ? -1 : token.indexOf(':');
+            String field = colon < 0 ? defaultField : token.substring(0, colon);
+            String value = token.substring(colon + 1);
+            List<String> values = values(source, field);
+            if (value.startsWith("\"") && value.endsWith("\"") && value.length() >= 2) {
+                String phrase = value.substring(1, value.length() - 1);
+                return values.stream().anyMatch(v -> containsPhrase(v, phrase));
+            }
+            return values.stream().anyMatch(v -> matchesTerm(v, value));
+        }
+    }
+
+    private record StoredIndex(ObjectNode mappings, ObjectNode settings, Map<String, StoredDocument> documents) {
+        private StoredIndex(ObjectNode mappings, ObjectNode settings) {
+            this(mappings, settings, new LinkedHashMap<>());
+        }
+    }
+
+    private record StoredDocument(String index, String id, long version, long sequence, ObjectNode source) {
+    }
+
+    private record Response(int status, JsonNode body) {
+    }
+
+    private record Request(String method, List<String> path, Map<String, String> params, byte[] body, ObjectMapper om) {
+
+        static Request of(HttpExchange exchange, ObjectMapper om) throws IOException {
+            List<String> path = new ArrayList<>();
+            for (String segment : exchange.getRequestURI().getRawPath().split("/")) {
+                if (!segment.isEmpty()) {
+                    path.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+                }
+            }
+            Map<String, String> params = new HashMap<>();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    int equals = param.indexOf('=');
+                    String name = URLDecoder.decode(equals < 0 ? param : param.substring(0, equals), StandardCharsets.UTF_8);
+                    params.put(name, equals < 0 ? "" : URLDecoder.decode(param.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+            return new Request(exchange.getRequestMethod(), path, params, exchange.getRequestBody().readAllBytes(), om);
+        }
+
+        JsonNode json() {
+            if (body.length == 0) {
+                return null;
+            }
+            try {
+                return om.readTree(body);
+            } catch (IOException e) {
+                throw new StandInException(400, "parse_exception", "request body is not valid JSON: " + e.getMessage());
+            }
+        }
+
+        boolean flag(String name) {
+            return Boolean.parseBoolean(params.getOrDefault(name, "false"));
+        }
+    }
+
+    private static final class StandInException extends RuntimeException {
+        private final int status;
+        private final String type;
+
+        private StandInException(int status, String type, String reason) {
+            super(reason);
+            this.status = status;
+            this.type = type;
+        }
+    }
+}
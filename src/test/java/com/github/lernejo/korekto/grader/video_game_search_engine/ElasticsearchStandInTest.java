@@ -0,0 +1,83 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ElasticsearchStandInTest {
+
+    private ElasticsearchStandIn standIn;
+    private ClientPools clientPools;
+    private ElasticsearchClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        standIn = ElasticsearchStandIn.start();
+        clientPools = new ClientPools(VideoGameSearchEngineGrader.newObjectMapper(), 0, standIn.port());
+        client = clientPools.elasticsearchClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientPools.close();
+        standIn.close();
+    }
+
+    @Test
+    void query_string_phrase_matches_field_tokens() throws IOException {
+        index("games", Map.of("1", "MMO Shooter", "2", "Card Game", "3", "Shooter"));
+
+        List<String> ids = client.search(s -> s.index("games").q("genre:\"Shooter\""), Map.class).hits().hits().stream()
+            .map(Hit::id)
+            .toList();
+
+        assertThat(ids).containsExactlyInAnyOrder("1", "3");
+    }
+
+    @Test
+    void reset_index_empties_it_behind_an_alias() throws IOException {
+        client.indices().create(c -> c.index("games").mappings(m -> m.properties("genre", p -> p.keyword(k -> k))));
+        index("games", Map.of("1", "Shooter"));
+
+        new IndexResetter(client).reset("games");
+
+        assertThat(client.count(c -> c.index("games")).count()).isZero();
+        Map<String, IndexState> indices = client.indices().get(g -> g.index("games")).result();
+        assertThat(indices).hasSize(1).doesNotContainKey("games");
+        IndexState fresh = indices.values().iterator().next();
+        assertThat(fresh.aliases()).containsOnlyKeys("games");
+        assertThat(fresh.mappings().properties()).containsOnlyKeys("genre");
+    }
+
+    @Test
+    void verifier_pages_through_whole_index() throws IOException {
+        client.bulk(b -> {
+            IntStream.range(0, 2_500).forEach(i -> b.operations(o -> o.index(ix -> ix.index("games").id("g" + i).document(Map.of("id", "g" + i)))));
+            return b;
+        });
+
+        IndexVerifier.Verification verification = new IndexVerifier(client, 1_000)
+            .verify("games", Map.class, source -> String.valueOf(source.get("id")), IntStream.range(1, 2_501).mapToObj(i -> "g" + i).toList());
+
+        assertThat(verification.documents()).isEqualTo(2_500);
+        assertThat(verification.missingExamples()).containsExactly("g2500");
+        assertThat(verification.unexpectedExamples()).containsExactly("g0");
+    }
+
+    private void index(String index, Map<String, String> genresById) throws IOException {
+        client.bulk(b -> {
+            genresById.forEach((id, genre) -> b.operations(o -> o.index(ix -> ix.index(index).id(id).document(Map.of("genre", genre)))));
+            return b;
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GameGeneratorTest {
+
+    private final List<Game> catalog = GameCatalog.load(VideoGameSearchEngineGrader.newObjectMapper()).games();
+
+    @Test
+    void same_seed_gives_same_games() {
+        List<Game> first = generate(new GameGenerator(catalog, new Random(7)::nextInt), 100);
+        List<Game> second = generate(new GameGenerator(catalog, new Random(7)::nextInt), 100);
+
+        assertThat(first).isEqualTo(second);
+    }
+
+    @Test
+    void games_have_distinct_ids_and_every_field_set() {
+        List<Game> games = generate(new GameGenerator(catalog, new Random(42)::nextInt), 10_000);
+
+        Set<String> ids = new HashSet<>();
+        assertThat(games).allSatisfy(game -> {
+            assertThat(ids.add(game.id())).isTrue();
+            assertThat(game.title()).isNotBlank();
+            assertThat(game.short_description()).isNotBlank().matches(".*[.!?]");
+            assertThat(game.genre()).isNotBlank();
+            assertThat(game.platform()).isNotBlank();
+            assertThat(game.publisher()).isNotBlank();
+            assertThat(game.release_date()).isNotNull();
+        });
+    }
+
+    @Test
+    void values_keep_the_ranks_they_have_in_the_catalog() {
+        List<Game> games = generate(new GameGenerator(catalog, new Random(3)::nextInt), 50_000);
+
+        assertThat(mostFrequent(games, Game::genre)).isEqualTo(mostFrequent(catalog, Game::genre));
+        assertThat(mostFrequent(games, Game::platform)).isEqualTo(mostFrequent(catalog, Game::platform));
+        assertThat(games.stream().map(Game::genre).collect(Collectors.toSet()))
+            .isSubsetOf(catalog.stream().map(Game::genre).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void fitted_exponent_matches_a_known_zipf_distribution() {
+        long[] frequencies = {1200, 600, 400, 300, 240, 200};
+
+        assertThat(GameGenerator.ZipfSampler.fitExponent(frequencies)).isBetween(0.99, 1.01);
+    }
+
+    private static List<Game> generate(GameGenerator generator, int count) {
+        List<Game> games = new ArrayList<>(count);
+        generator.games(count).forEach(games::add);
+        return games;
+    }
+
+    private static String mostFrequent(List<Game> games, Function<Game, String> valueOf) {
+        return games.stream()
+            .collect(Collectors.groupingBy(valueOf, Collectors.counting()))
+            .entrySet().stream()
+            .max(Map.Entry.comparingByValue())
+            .orElseThrow()
+            .getKey();
+    }
+}
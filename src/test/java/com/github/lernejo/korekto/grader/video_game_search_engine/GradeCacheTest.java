@@ -0,0 +1,65 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.GradePart;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradeCacheTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parts_are_read_back_by_name() {
+        GradeCache cache = new GradeCache(VideoGameSearchEngineGrader.newObjectMapper(), directory, "v1");
+        cache.put(COMMIT, List.of(
+            new GradePart("Part 1 - Compilation & Tests", 4.0D, 4.0D, List.of()),
+            new GradePart("Part 4 - AMQP -> ES", 2.0D, 4.0D, List.of("Expected 4 games in index"))), true);
+
+        GradeCache.Entry entry = cache.get(COMMIT).orElseThrow();
+        assertThat(entry.compiled()).isTrue();
+        assertThat(entry.parts()).containsOnlyKeys("Part 1 - Compilation & Tests", "Part 4 - AMQP -> ES");
+        GradePart part = entry.parts().get("Part 4 - AMQP -> ES");
+        assertThat(part.getGrade()).isEqualTo(2.0D);
+        assertThat(part.getMaxGrade()).isEqualTo(4.0D);
+        assertThat(part.getComments()).containsExactly("Expected 4 games in index");
+    }
+
+    @Test
+    void parts_of_another_grader_version_are_not_reused() {
+        new GradeCache(VideoGameSearchEngineGrader.newObjectMapper(), directory, "v1")
+            .put(COMMIT, List.of(new GradePart("Part 1 - Compilation & Tests", 4.0D, 4.0D, List.of())), true);
+
+        assertThat(new GradeCache(VideoGameSearchEngineGrader.newObjectMapper(), directory, "v2").get(COMMIT)).isEmpty();
+    }
+
+    @Test
+    void grader_version_is_a_stable_digest_of_the_runtime_classpath() {
+        String version = GradeCache.graderVersion();
+
+        assertThat(version).matches("[0-9a-f]{16}").isEqualTo(GradeCache.graderVersion());
+    }
+
+    @Test
+    void unknown_commit_has_no_parts() {
+        assertThat(new GradeCache(VideoGameSearchEngineGrader.newObjectMapper(), directory, "v1").get(COMMIT)).isEmpty();
+    }
+
+    @Test
+    void latest_is_the_newest_graded_commit() {
+        GradeCache cache = new GradeCache(VideoGameSearchEngineGrader.newObjectMapper(), directory, "v1");
+        String older = "1111111111111111111111111111111111111111";
+        cache.put(older, List.of(), false);
+        cache.put(COMMIT, List.of(), true);
+
+        assertThat(cache.latest(List.of("2222222222222222222222222222222222222222", COMMIT, older)))
+            .hasValueSatisfying(entry -> assertThat(entry.commit()).isEqualTo(COMMIT));
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradingMetricsTest {
+
+    private final GradingMetrics metrics = new GradingMetrics();
+
+    @Test
+    void parts_and_phases_are_exported_in_seconds_with_their_labels() {
+        metrics.recordPart("Part 4 - AMQP -> ES", GradingMetrics.Outcome.GRADED, 1_500_000_000L);
+        metrics.recordPart("Part 4 - AMQP -> ES", GradingMetrics.Outcome.GRADED, 500_000_000L);
+        metrics.recordPhase("Part 4 - AMQP -> ES", GradingMetrics.Phase.QUEUE_DRAIN, 250_000_000L);
+
+        assertThat(metrics.prometheusText().lines()).contains(
+            "# TYPE korekto_part_duration_seconds summary",
+            "korekto_part_duration_seconds_count{part=\"Part 4 - AMQP -> ES\"} 2",
+            "korekto_part_duration_seconds_sum{part=\"Part 4 - AMQP -> ES\"} 2.0",
+            "korekto_part_duration_seconds_max{part=\"Part 4 - AMQP -> ES\"} 1.5",
+            "korekto_parts_total{outcome=\"graded\",part=\"Part 4 - AMQP -> ES\"} 2",
+            "korekto_phase_duration_seconds_sum{part=\"Part 4 - AMQP -> ES\",phase=\"queue_drain\"} 0.25");
+    }
+
+    @Test
+    void reused_parts_are_counted_but_not_timed() {
+        metrics.recordPart("Part 2 - CI", GradingMetrics.Outcome.REUSED, 0L);
+
+        GradingMetrics.Snapshot snapshot = metrics.snapshot();
+
+        assertThat(snapshot.parts()).singleElement().satisfies(part -> {
+            assertThat(part.outcomes()).containsEntry("reused", 1L);
+            assertThat(part.seconds().count()).isZero();
+        });
+        assertThat(metrics.prometheusText()).doesNotContain("korekto_part_duration_seconds_count{");
+    }
+
+    @Test
+    void student_processes_usage_is_kept_as_far_as_it_could_be_read() {
+        metrics.recordProcess("search-api", new StudentProcess.Usage(OptionalLong.of(2_000_000_000L), OptionalLong.of(300_000_000L)));
+        metrics.recordProcess("search-api", new StudentProcess.Usage(OptionalLong.empty(), OptionalLong.of(100_000_000L)));
+
+        assertThat(metrics.snapshot().studentProcesses()).singleElement().satisfies(process -> {
+            assertThat(process.cpuSeconds().count()).isEqualTo(1L);
+            assertThat(process.cpuSeconds().sum()).isEqualTo(2.0D);
+            assertThat(process.peakResidentBytes().count()).isEqualTo(2L);
+            assertThat(process.peakResidentBytes().max()).isEqualTo(300_000_000D);
+        });
+    }
+
+    @Test
+    void label_values_are_escaped() {
+        metrics.recordPart("Part \"quoted\"", GradingMetrics.Outcome.FAILED, 1L);
+
+        assertThat(metrics.prometheusText()).contains("korekto_parts_total{outcome=\"failed\",part=\"Part \\\"quoted\\\"\"} 1");
+    }
+}
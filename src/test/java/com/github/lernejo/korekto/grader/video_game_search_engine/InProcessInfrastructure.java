@@ -0,0 +1,89 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.Broker;
+import org.apache.qpid.server.model.Port;
+import org.apache.qpid.server.model.VirtualHostNode;
+import org.apache.qpid.server.model.port.AmqpPort;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An embedded Qpid broker speaking AMQP 0-9-1 and an {@link ElasticsearchStandIn}, both in the JVM of the tests,
+ * so that the grader can be tested without Docker.
+ * <p>
+ * Selected with `-DINFRASTRUCTURE=com.github.lernejo.korekto.grader.video_game_search_engine.InProcessInfrastructure`,
+ * which the `in-process` Maven profile sets.
+ */
+public class InProcessInfrastructure implements Infrastructure {
+
+    private final SystemLauncher systemLauncher = new SystemLauncher();
+    private final Path workDirectory;
+    private final Broker<?> broker;
+    private final int rabbitMqPort;
+    private final ElasticsearchStandIn elasticsearch;
+
+    public InProcessInfrastructure() throws Exception {
+        workDirectory = Files.createTempDirectory("korekto-qpid");
+        URL initialConfiguration = InProcessInfrastructure.class.getClassLoader().getResource("qpid-initial-config.json");
+        if (initialConfiguration == null) {
+            throw new IllegalStateException("Missing qpid-initial-config.json in test resources");
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("type", "Memory");
+        attributes.put("initialConfigurationLocation", initialConfiguration.toExternalForm());
+        attributes.put("startupLoggedToSystemOut", false);
+        attributes.put("context", Map.of("qpid.work_dir", workDirectory.toString()));
+        systemLauncher.startup(attributes);
+        broker = systemLauncher.getSystemConfig().getContainer(Broker.class);
+        rabbitMqPort = broker.getChildren(Port.class).stream()
+            .filter(AmqpPort.class::isInstance)
+            .map(port -> ((AmqpPort<?>) port).getBoundPort())
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("Embedded broker has no AMQP port"));
+        elasticsearch = ElasticsearchStandIn.start();
+    }
+
+    @Override
+    public int rabbitMqPort() {
+        return rabbitMqPort;
+    }
+
+    @Override
+    public int elasticSearchPort() {
+        return elasticsearch.port();
+    }
+
+    @Override
+    public void createVirtualHost(String virtualHost) {
+        broker.createChild(VirtualHostNode.class, Map.of(
+            VirtualHostNode.NAME, virtualHost,
+            VirtualHostNode.TYPE, "Memory",
+            "virtualHostInitialConfiguration", "{\"type\": \"Memory\"}"));
+    }
+
+    @Override
+    public void deleteVirtualHost(String virtualHost) {
+        VirtualHostNode<?> node = broker.getChildByName(VirtualHostNode.class, virtualHost);
+        if (node != null) {
+            node.delete();
+        }
+    }
+
+    @Override
+    public void close() {
+        elasticsearch.close();
+        systemLauncher.shutdown();
+        try (var paths = Files.walk(workDirectory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
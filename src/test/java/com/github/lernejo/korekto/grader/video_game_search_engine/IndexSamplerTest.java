@@ -0,0 +1,55 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class IndexSamplerTest {
+
+    @Test
+    void sample_contains_exactly_count_distinct_indexes_within_population() {
+        int[] sample = IndexSampler.sample(367, 70, new Random(42)::nextInt);
+
+        assertThat(sample).hasSize(70).doesNotHaveDuplicates();
+        assertThat(IntStream.of(sample)).allMatch(i -> i >= 0 && i < 367);
+    }
+
+    @Test
+    void sample_of_whole_population_is_a_permutation() {
+        int[] sample = IndexSampler.sample(1_000, 1_000, new Random(42)::nextInt);
+
+        Arrays.sort(sample);
+        assertThat(sample).isEqualTo(IntStream.range(0, 1_000).toArray());
+    }
+
+    @Test
+    void same_seed_gives_same_sample() {
+        int[] first = IndexSampler.sample(10_000_000, 20, new Random(7)::nextInt);
+        int[] second = IndexSampler.sample(10_000_000, 20, new Random(7)::nextInt);
+
+        assertThat(first).isEqualTo(second);
+    }
+
+    @Test
+    void every_index_is_equally_likely() {
+        Random random = new Random(3);
+        int[] occurrences = new int[10];
+        for (int draw = 0; draw < 50_000; draw++) {
+            for (int index : IndexSampler.sample(10, 2, random::nextInt)) {
+                occurrences[index]++;
+            }
+        }
+
+        assertThat(IntStream.of(occurrences)).allMatch(o -> Math.abs(o - 10_000) < 500);
+    }
+
+    @Test
+    void sampling_more_than_population_is_rejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> IndexSampler.sample(3, 4, new Random()::nextInt));
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexVerifierTest {
+
+    private ElasticsearchStandIn standIn;
+    private ClientPools clientPools;
+    private ElasticsearchClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        standIn = ElasticsearchStandIn.start();
+        clientPools = new ClientPools(VideoGameSearchEngineGrader.newObjectMapper(), 0, standIn.port());
+        client = clientPools.elasticsearchClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientPools.close();
+        standIn.close();
+    }
+
+    @Test
+    void index_holding_exactly_the_expected_keys_matches() throws IOException {
+        index(Map.of("1", "Zelda", "2", "Mario", "3", "Metroid", "4", "Kirby"));
+
+        IndexVerifier.Verification verification = verify(List.of("Zelda", "Mario", "Metroid", "Kirby"));
+
+        assertThat(verification.matches()).isTrue();
+        assertThat(verification.documents()).isEqualTo(4L);
+        assertThat(verification.expected()).isEqualTo(4L);
+    }
+
+    @Test
+    void missing_keys_are_counted_and_named() throws IOException {
+        index(Map.of("1", "Zelda", "2", "Mario"));
+
+        IndexVerifier.Verification verification = verify(List.of("Zelda", "Mario", "Metroid", "Kirby"));
+
+        assertThat(verification.matches()).isFalse();
+        assertThat(verification.missing()).isEqualTo(2L);
+        assertThat(verification.missingExamples()).containsExactlyInAnyOrder("Metroid", "Kirby");
+        assertThat(verification.unexpected()).isZero();
+        assertThat(verification.unexpectedExamples()).isEmpty();
+        assertThat(verification.duplicated()).isZero();
+    }
+
+    @Test
+    void documents_sharing_a_key_are_counted_as_duplicated() throws IOException {
+        index(Map.of("1", "Zelda", "2", "Zelda", "3", "Mario"));
+
+        IndexVerifier.Verification verification = verify(List.of("Zelda", "Mario"));
+
+        assertThat(verification.matches()).isFalse();
+        assertThat(verification.duplicated()).isEqualTo(1L);
+        assertThat(verification.missing()).isZero();
+        assertThat(verification.unexpected()).isZero();
+    }
+
+    @Test
+    void unexpected_keys_are_counted_and_named() throws IOException {
+        index(Map.of("1", "Zelda", "2", "Tetris"));
+
+        IndexVerifier.Verification verification = verify(List.of("Zelda"));
+
+        assertThat(verification.unexpected()).isEqualTo(1L);
+        assertThat(verification.unexpectedExamples()).containsExactly("Tetris");
+        assertThat(verification.missing()).isZero();
+    }
+
+    @Test
+    void empty_page_ending_an_index_of_a_multiple_of_the_page_size_is_read() throws IOException {
+        index(Map.of("1", "Zelda", "2", "Mario", "3", "Metroid", "4", "Kirby"));
+
+        IndexVerifier.Verification verification = new IndexVerifier(client, 2)
+            .verify("games", Map.class, source -> String.valueOf(source.get("title")), List.of("Zelda", "Mario", "Metroid", "Kirby"));
+
+        assertThat(verification.matches()).isTrue();
+        assertThat(verification.documents()).isEqualTo(4L);
+    }
+
+    private IndexVerifier.Verification verify(List<String> expectedTitles) {
+        return new IndexVerifier(client).verify("games", Map.class, source -> String.valueOf(source.get("title")), expectedTitles);
+    }
+
+    private void index(Map<String, String> titlesById) throws IOException {
+        client.bulk(b -> {
+            titlesById.forEach((id, title) -> b.operations(o -> o.index(ix -> ix.index("games").id(id).document(Map.of("title", title)))));
+            return b;
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void small_values_are_exact() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MILLISECONDS);
+        LongStream.rangeClosed(1, 100).forEach(histogram::record);
+
+        assertThat(histogram.count()).isEqualTo(100);
+        assertThat(histogram.percentile(50)).isEqualTo(50);
+        assertThat(histogram.percentile(99)).isEqualTo(99);
+        assertThat(histogram.percentile(100)).isEqualTo(100);
+    }
+
+    @Test
+    void large_values_are_within_one_percent() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MICROSECONDS);
+        LongStream.rangeClosed(1, 1_000_000).forEach(histogram::record);
+
+        assertThat(histogram.percentile(50)).isCloseTo(500_000L, within(5_000L));
+        assertThat(histogram.percentile(95)).isCloseTo(950_000L, within(9_500L));
+        assertThat(histogram.percentile(99)).isCloseTo(990_000L, within(9_900L));
+        assertThat(histogram.percentile(100)).isEqualTo(1_000_000L);
+        assertThat(histogram.max()).isEqualTo(1_000_000L);
+    }
+
+    @Test
+    void every_value_is_at_most_the_highest_value_of_its_bucket() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextLong() >>> random.nextInt(63);
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+
+            assertThat(highest).isGreaterThanOrEqualTo(value);
+            assertThat(highest - value).isLessThanOrEqualTo(value / 128);
+        }
+    }
+
+    @Test
+    void empty_histogram_reports_zero() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MILLISECONDS);
+
+        assertThat(histogram.percentile(99)).isZero();
+        assertThat(histogram.max()).isZero();
+    }
+
+    @Test
+    void nanos_are_converted_to_the_histogram_unit() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MILLISECONDS);
+        histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(42));
+
+        assertThat(histogram.percentile(50)).isEqualTo(42);
+    }
+
+    @Test
+    void invalid_arguments_are_rejected() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MILLISECONDS);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> histogram.record(-1));
+        assertThatIllegalArgumentException().isThrownBy(() -> histogram.percentile(101));
+    }
+}
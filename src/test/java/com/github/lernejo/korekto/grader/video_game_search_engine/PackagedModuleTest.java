@@ -0,0 +1,65 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackagedModuleTest {
+
+    private static final byte[] APPLICATION_CLASS = "CAFEBABE...Lorg/springframework/boot/autoconfigure/SpringBootApplication;...".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] OTHER_CLASS = "CAFEBABE...Lorg/springframework/stereotype/Service;...".getBytes(StandardCharsets.ISO_8859_1);
+
+    @TempDir
+    Path projectRoot;
+
+    @Test
+    void module_is_launched_from_its_jar_then_its_runtime_classpath() throws IOException {
+        Path target = Files.createDirectories(projectRoot.resolve("search-api/target"));
+        writeJar(target.resolve("search-api-1.0.jar"), Map.of(
+            "fr/lernejo/search/Launcher.class", APPLICATION_CLASS,
+            "fr/lernejo/search/GameService.class", OTHER_CLASS));
+        writeJar(target.resolve("search-api-1.0-sources.jar"), Map.of());
+        Files.writeString(target.resolve("korekto-classpath.txt"), "/repo/common.jar" + File.pathSeparator + "/repo/spring.jar\n");
+
+        assertThat(PackagedModule.find(projectRoot, "search-api")).hasValueSatisfying(module -> {
+            assertThat(module.mainClass()).isEqualTo("fr.lernejo.search.Launcher");
+            assertThat(module.classpath()).containsExactly(target.resolve("search-api-1.0.jar"), Path.of("/repo/common.jar"), Path.of("/repo/spring.jar"));
+            assertThat(module.command("-Xmx256m -Dserver.port=8080", "games.json"))
+                .endsWith("-Xmx256m", "-Dserver.port=8080", "-cp", String.join(File.pathSeparator, module.classpath().stream().map(Path::toString).toList()), "fr.lernejo.search.Launcher", "games.json");
+        });
+    }
+
+    @Test
+    void module_without_application_class_or_classpath_is_not_packaged() throws IOException {
+        Path target = Files.createDirectories(projectRoot.resolve("file-injector/target"));
+        writeJar(target.resolve("file-injector-1.0.jar"), Map.of("fr/lernejo/injector/Publisher.class", OTHER_CLASS));
+
+        assertThat(PackagedModule.find(projectRoot, "file-injector")).isEmpty();
+
+        Files.writeString(target.resolve("korekto-classpath.txt"), "/repo/spring.jar");
+
+        assertThat(PackagedModule.find(projectRoot, "file-injector")).isEmpty();
+    }
+
+    private static void writeJar(Path jar, Map<String, byte[]> entries) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(jar);
+             JarOutputStream jarOutputStream = new JarOutputStream(outputStream)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                jarOutputStream.putNextEntry(new JarEntry(entry.getKey()));
+                jarOutputStream.write(entry.getValue());
+                jarOutputStream.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.GradePart;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.BROKERS;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.CPU;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.COMPILED_WORKSPACE;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.WEB_PORT;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.StubPartGrader.part;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class PartSchedulerTest {
+
+    private final PartScheduler scheduler = new PartScheduler(4);
+
+    private final List<PlannedPart> plannedParts = List.of(
+        part("Build", PartInputs.build(), CPU),
+        part("CI", PartInputs.remote()),
+        part("Coverage", PartInputs.buildOutput(), COMPILED_WORKSPACE),
+        part("Search", PartInputs.module(LaunchingContext.SEARCH_API_MODULE), COMPILED_WORKSPACE, BROKERS, WEB_PORT),
+        part("Injection", PartInputs.module(LaunchingContext.FILE_INJECTOR_MODULE), COMPILED_WORKSPACE, BROKERS),
+        part("Style", PartInputs.javaSources(), CPU)
+    );
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void parts_wait_for_the_build_and_for_earlier_parts_sharing_an_exclusive_resource() {
+        assertThat(PartScheduler.predecessors(plannedParts, 0)).isEmpty();
+        assertThat(PartScheduler.predecessors(plannedParts, 1)).isEmpty();
+        assertThat(PartScheduler.predecessors(plannedParts, 2)).containsExactly(0);
+        assertThat(PartScheduler.predecessors(plannedParts, 3)).containsExactly(0);
+        assertThat(PartScheduler.predecessors(plannedParts, 4)).containsExactly(0, 3);
+        assertThat(PartScheduler.predecessors(plannedParts, 5)).isEmpty();
+    }
+
+    @Test
+    void independent_parts_run_alongside_the_build_and_results_keep_plan_order() {
+        CountDownLatch styleStarted = new CountDownLatch(1);
+
+        List<GradePart> parts = scheduler.grade(plannedParts, p -> {
+            if (p.name().equals("Build")) {
+                await(styleStarted);
+            } else if (p.name().equals("Style")) {
+                styleStarted.countDown();
+            }
+            return new GradePart(p.name(), 1.0D, 1.0D, List.of());
+        });
+
+        assertThat(parts).extracting(GradePart::getId).containsExactly("Build", "CI", "Coverage", "Search", "Injection", "Style");
+    }
+
+    @Test
+    void failure_of_a_part_is_rethrown() {
+        assertThatIllegalStateException().isThrownBy(() -> scheduler.grade(plannedParts, p -> {
+            if (p.name().equals("Build")) {
+                throw new IllegalStateException("Could not connect to the dockerized RabbitMQ");
+            }
+            return new GradePart(p.name(), 1.0D, 1.0D, List.of());
+        })).withMessage("Could not connect to the dockerized RabbitMQ");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).as("independent part started during the build").isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
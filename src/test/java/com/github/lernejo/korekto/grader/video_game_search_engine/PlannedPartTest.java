@@ -0,0 +1,71 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.GradePart;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.BROKERS;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.COMPILED_WORKSPACE;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.WEB_PORT;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.StubPartGrader.part;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlannedPartTest {
+
+    private final List<PlannedPart> plannedParts = List.of(
+        part("Part 1", PartInputs.build()),
+        part("Part 4", PartInputs.module(LaunchingContext.SEARCH_API_MODULE), COMPILED_WORKSPACE, BROKERS, WEB_PORT),
+        part("Part 5", PartInputs.module(LaunchingContext.FILE_INJECTOR_MODULE), COMPILED_WORKSPACE, BROKERS),
+        part("Part 6", PartInputs.module(LaunchingContext.SEARCH_API_MODULE), COMPILED_WORKSPACE, BROKERS, WEB_PORT),
+        part("CI", PartInputs.remote()),
+        part("Git", PartInputs.history()),
+        part("Style", PartInputs.javaSources())
+    );
+
+    @Test
+    void same_commit_reuses_all_but_remote_parts() {
+        assertThat(PlannedPart.reusableParts(plannedParts, previousGrading(true), ChangeSet.NONE))
+            .containsOnlyKeys("Part 1", "Part 4", "Part 5", "Part 6", "Git", "Style");
+    }
+
+    @Test
+    void change_in_a_module_regrades_its_parts_and_the_build() {
+        ChangeSet changes = new ChangeSet(true, List.of("file-injector/src/main/java/fr/lernejo/fileinjector/Launcher.java"));
+
+        assertThat(PlannedPart.reusableParts(plannedParts, previousGrading(true), changes))
+            .containsOnlyKeys("Part 4", "Part 6");
+    }
+
+    @Test
+    void change_in_shared_files_regrades_all_modules() {
+        ChangeSet changes = new ChangeSet(true, List.of("pom.xml"));
+
+        assertThat(PlannedPart.reusableParts(plannedParts, previousGrading(true), changes))
+            .containsOnlyKeys("Style");
+    }
+
+    @Test
+    void documentation_change_only_regrades_history() {
+        ChangeSet changes = new ChangeSet(true, List.of("README.md", ".github/workflows/build.yml"));
+
+        assertThat(PlannedPart.reusableParts(plannedParts, previousGrading(true), changes))
+            .containsOnlyKeys("Part 1", "Part 4", "Part 5", "Part 6", "Style");
+    }
+
+    @Test
+    void parts_running_a_workspace_which_did_not_compile_are_not_reused() {
+        assertThat(PlannedPart.reusableParts(plannedParts, previousGrading(false), ChangeSet.NONE))
+            .containsOnlyKeys("Git", "Style");
+    }
+
+    private GradeCache.Entry previousGrading(boolean compiled) {
+        Map<String, GradePart> parts = plannedParts.stream()
+            .map(p -> new GradePart(p.name(), 1.0D, 4.0D, List.of()))
+            .collect(Collectors.toMap(GradePart::getId, Function.identity()));
+        return new GradeCache.Entry("0123456789abcdef0123456789abcdef01234567", parts, compiled);
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.grader.video_game_search_engine.ResourceTokens.Token;
+import com.github.lernejo.korekto.toolkit.GradePart;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.BROKERS;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.COMPILED_WORKSPACE;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.CPU;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.PartNeed.WEB_PORT;
+import static com.github.lernejo.korekto.grader.video_game_search_engine.StubPartGrader.part;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class ResourceTokensTest {
+
+    private final ResourceTokens resourceTokens = new ResourceTokens();
+
+    @Test
+    void build_token_is_held_while_the_part_is_graded() {
+        PlannedPart build = part("Build", PartInputs.build(), CPU);
+
+        try (ResourceTokens.Grading tokens = resourceTokens.grading()) {
+            tokens.grade(build, () -> {
+                assertThat(resourceTokens.available(Token.BUILD)).isEqualTo(Token.BUILD.permits() - 1);
+                return gradePart(build);
+            });
+
+            assertThat(resourceTokens.available(Token.BUILD)).isEqualTo(Token.BUILD.permits());
+        }
+    }
+
+    @Test
+    void launch_token_is_held_once_until_the_grading_ends() {
+        PlannedPart search = part("Search", PartInputs.module(LaunchingContext.SEARCH_API_MODULE), COMPILED_WORKSPACE, BROKERS, WEB_PORT);
+        PlannedPart injection = part("Injection", PartInputs.module(LaunchingContext.FILE_INJECTOR_MODULE), COMPILED_WORKSPACE, BROKERS);
+
+        try (ResourceTokens.Grading tokens = resourceTokens.grading()) {
+            tokens.grade(search, () -> gradePart(search));
+            tokens.grade(injection, () -> gradePart(injection));
+
+            assertThat(resourceTokens.available(Token.LAUNCH)).isEqualTo(Token.LAUNCH.permits() - 1);
+        }
+        assertThat(resourceTokens.available(Token.LAUNCH)).isEqualTo(Token.LAUNCH.permits());
+    }
+
+    @Test
+    void build_token_is_given_back_when_the_part_fails() {
+        PlannedPart build = part("Build", PartInputs.build(), CPU);
+
+        try (ResourceTokens.Grading tokens = resourceTokens.grading()) {
+            assertThatIllegalStateException().isThrownBy(() -> tokens.grade(build, () -> {
+                throw new IllegalStateException("Maven crashed");
+            }));
+        }
+
+        assertThat(resourceTokens.available(Token.BUILD)).isEqualTo(Token.BUILD.permits());
+    }
+
+    private static GradePart gradePart(PlannedPart plannedPart) {
+        return new GradePart(plannedPart.name(), 1.0D, 1.0D, List.of());
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Okio;
+import org.junit.jupiter.api.Test;
+import retrofit2.Converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SilentJacksonConverterFactoryTest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=UTF-8");
+
+    private final SilentJacksonConverterFactory factory = SilentJacksonConverterFactory.create(new ObjectMapper());
+    private final Converter<ResponseBody, ?> converter = factory.responseBodyConverter(Map.class, new Annotation[0], null);
+
+    @Test
+    void body_is_parsed_without_being_read_to_its_end() throws IOException {
+        InputStream endlessBody = new InputStream() {
+            private final byte[] value = "{\"title\": \"Zelda\"}".getBytes();
+            private int position;
+
+            @Override
+            public int read() {
+                return position < value.length ? value[position++] : ' ';
+            }
+        };
+
+        Object parsed = converter.convert(ResponseBody.create(JSON, -1L, Okio.buffer(Okio.source(endlessBody))));
+
+        assertThat(parsed).isEqualTo(Map.of("title", "Zelda"));
+    }
+
+    @Test
+    void unparseable_body_is_recorded_up_to_the_limit() throws IOException {
+        try (var holder = factory.newExceptionHolder()) {
+            assertThat(converter.convert(ResponseBody.create(JSON, "{\"title\": oops}"))).isNull();
+            assertThat(holder.getLatestDeserializationProblem().rawBody()).isEqualTo("{\"title\": oops}");
+
+            String largeBody = "not json " + "x".repeat(3 * SilentJacksonConverterFactory.MAX_RECORDED_BODY_BYTES);
+            converter.convert(ResponseBody.create(JSON, largeBody));
+
+            assertThat(holder.getLatestDeserializationProblem().rawBody())
+                .startsWith("not json xxx")
+                .endsWith("x\n[truncated after " + SilentJacksonConverterFactory.MAX_RECORDED_BODY_BYTES + " bytes]")
+                .hasSize(SilentJacksonConverterFactory.MAX_RECORDED_BODY_BYTES + "\n[truncated after 16384 bytes]".length());
+        }
+    }
+
+    @Test
+    void closing_a_nested_holder_restores_the_enclosing_one() throws IOException {
+        try (var outer = factory.newExceptionHolder()) {
+            try (var inner = factory.newExceptionHolder()) {
+                converter.convert(ResponseBody.create(JSON, "inner"));
+
+                assertThat(inner.getLatestDeserializationProblem().rawBody()).isEqualTo("inner");
+                assertThat(outer.getLatestDeserializationProblem()).isNull();
+            }
+
+            converter.convert(ResponseBody.create(JSON, "outer"));
+
+            assertThat(outer.getLatestDeserializationProblem().rawBody()).isEqualTo("outer");
+        }
+    }
+
+    @Test
+    void problems_of_other_threads_are_not_reported_to_the_holder() throws Exception {
+        try (var holder = factory.newExceptionHolder()) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    converter.convert(ResponseBody.create(JSON, "other thread"));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).get();
+
+            assertThat(holder.getLatestDeserializationProblem()).isNull();
+        }
+    }
+}
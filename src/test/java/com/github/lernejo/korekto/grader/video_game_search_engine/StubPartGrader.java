@@ -0,0 +1,21 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import com.github.lernejo.korekto.toolkit.GradePart;
+import com.github.lernejo.korekto.toolkit.PartGrader;
+
+import java.util.List;
+
+/**
+ * A part giving full marks without touching anything, for tests about how parts are planned rather than graded.
+ */
+record StubPartGrader(String name, Double maxGrade) implements PartGrader<LaunchingContext> {
+
+    static PlannedPart part(String name, PartInputs inputs, PartNeed... needs) {
+        return new PlannedPart(new StubPartGrader(name, 1.0D), inputs, needs);
+    }
+
+    @Override
+    public GradePart grade(LaunchingContext context) {
+        return result(List.of(), maxGrade());
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class StudentProcessTest {
+
+    private static final Path WORKING_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"));
+
+    @Test
+    void failure_marker_ends_the_wait_for_the_port() throws IOException {
+        try (StudentProcess process = StudentProcess.start("search-api", WORKING_DIRECTORY, List.of("sh", "-c", "echo '***************************'; echo 'APPLICATION FAILED TO START'; sleep 30"))) {
+            long start = System.nanoTime();
+
+            Optional<String> failure = process.awaitPort(freePort(), 20, SECONDS);
+
+            assertThat(failure).hasValueSatisfying(f -> assertThat(f).contains("failed (APPLICATION FAILED TO START)"));
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(10L);
+        }
+    }
+
+    @Test
+    void only_the_end_of_the_output_is_kept() {
+        try (StudentProcess process = StudentProcess.start("file-injector", WORKING_DIRECTORY, List.of("sh", "-c", "i=1; while [ $i -le 100 ]; do echo line $i; i=$((i+1)); done; exit 3"))) {
+            Readiness.await().atMost(10, SECONDS).until(() -> process.hasExited() && process.outputTail().endsWith("line 100"));
+
+            assertThat(process.outputTail().lines()).hasSize(StudentProcess.KEPT_OUTPUT_LINES).first().isEqualTo("line 76");
+            assertThat(process.failure()).hasValueSatisfying(f -> assertThat(f).contains("exited with code 3").doesNotContain("line 75\n"));
+        }
+    }
+
+    @Test
+    void close_stops_the_children_of_the_process() {
+        StudentProcess process = StudentProcess.start("search-api", WORKING_DIRECTORY, List.of("sh", "-c", "sleep 60 & sleep 60 & wait"));
+        Readiness.await().atMost(10, SECONDS).until(() -> process.descendants().count() == 2L);
+        List<ProcessHandle> children = process.descendants().toList();
+
+        process.close();
+
+        assertThat(process.hasExited()).isTrue();
+        assertThat(children).noneMatch(ProcessHandle::isAlive);
+    }
+
+    @Test
+    void usage_of_a_process_which_exited_on_its_own_is_the_last_sampled_one() {
+        AtomicReference<StudentProcess.Usage> usage = new AtomicReference<>();
+        StudentProcess process = StudentProcess.start("file-injector", WORKING_DIRECTORY, List.of("sh", "-c", "i=0; while [ $i -lt 20000 ]; do i=$((i+1)); done; sleep 1"))
+            .onClose(usage::set);
+        Readiness.await().atMost(10, SECONDS).until(process::hasExited);
+
+        process.close();
+
+        assertThat(usage.get().cpuNanos()).isPresent();
+        assertThat(usage.get().peakResidentSetSizeBytes()).isPresent();
+    }
+
+    @Test
+    void launched_process_is_found_by_its_arguments_and_its_output_files_tailed() throws IOException {
+        Path log = Files.createTempFile("korekto-search-api", "maven.log");
+        Process launched = new ProcessBuilder("sh", "-c", "echo '[ERROR] BUILD FAILURE' >> \"$0\"; sleep 30", log.toString()).start();
+
+        try (StudentProcess process = StudentProcess.watch("search-api", launched::destroy, log.toString(), List.of(log))) {
+            Optional<String> failure = process.awaitPort(freePort(), 20, SECONDS);
+
+            assertThat(failure).hasValueSatisfying(f -> assertThat(f).contains("failed (BUILD FAILURE)"));
+            assertThat(process.hasExited()).isFalse();
+        }
+
+        assertThat(launched.isAlive()).isFalse();
+        assertThat(log).doesNotExist();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+}
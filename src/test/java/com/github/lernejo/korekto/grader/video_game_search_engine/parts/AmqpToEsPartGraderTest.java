@@ -0,0 +1,27 @@
+package com.github.lernejo.korekto.grader.video_game_search_engine.parts;
+
+import com.github.lernejo.korekto.grader.video_game_search_engine.IndexVerifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AmqpToEsPartGraderTest {
+
+    @Test
+    void mismatch_with_missing_games_only_does_not_mention_unexpected_ones() {
+        IndexVerifier.Verification verification = new IndexVerifier.Verification(4, 2, 2, 0, 0, List.of("Metroid", "Kirby"), List.of());
+
+        assertThat(AmqpToEsPartGrader.mismatch(verification))
+            .isEqualTo("Index `games` does not contain exactly the games sent to the game_info queue (missing games: 2 of 4, such as [Metroid, Kirby])");
+    }
+
+    @Test
+    void mismatch_names_every_problem_found() {
+        IndexVerifier.Verification verification = new IndexVerifier.Verification(4, 5, 1, 1, 1, List.of("Kirby"), List.of("Tetris"));
+
+        assertThat(AmqpToEsPartGrader.mismatch(verification))
+            .endsWith("(missing games: 1 of 4, such as [Kirby]; games indexed more than once: 1; games not sent: 1, such as [Tetris])");
+    }
+}